@@ -0,0 +1,69 @@
+package org.organicelement.deployment.model;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Checks a package of stored resources, either after a change of its
+ * version, which checks every resource again, or unchanged since the last
+ * successful check.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class CheckBenchmark {
+
+    @Param({ "2000" })
+    private int resources;
+
+    private File resource;
+
+    private DeploymentPackage dp;
+
+    private int run;
+
+    @Setup
+    public void setUp() throws IOException, CheckingException {
+        resource = File.createTempFile("resource", ".xml");
+        OutputStream os = new FileOutputStream(resource);
+        try {
+            os.write("<configuration/>".getBytes("UTF-8"));
+        } finally {
+            os.close();
+        }
+        dp = new DeploymentPackage().setSymbolicName("my.dp").setVersion("1.0.0");
+        for (int i = 0; i < resources; i++) {
+            dp.addResource(resource.toURI().toURL(), null, "conf/resource-" + i + ".xml");
+        }
+        dp.check(4);
+    }
+
+    @TearDown
+    public void tearDown() {
+        resource.delete();
+    }
+
+    @Benchmark
+    public void changed() throws CheckingException {
+        dp.setVersion("1.0." + (++run));
+        dp.check(4);
+    }
+
+    @Benchmark
+    public void unchanged() throws CheckingException {
+        dp.check(4);
+    }
+}
@@ -0,0 +1,57 @@
+package org.organicelement.deployment.model;
+
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Validates typical header values with {@link Checker}, compared with the
+ * regular expressions the validators replaced.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class CheckerBenchmark {
+
+    private static final String VERSION = "[0-9]+(\\.[0-9]+(\\.[0-9]+(\\.[0-9A-Za-z_-]+)?)?)?";
+
+    private static final Pattern SYMBOLIC_NAME = Pattern.compile("[a-zA-Z0-9_-]+(\\.[a-zA-Z0-9_-]+)*");
+
+    private static final Pattern VERSION_PATTERN = Pattern.compile(VERSION);
+
+    private static final Pattern VERSION_RANGE = Pattern.compile("([\\[(] *" + VERSION + " *, *" + VERSION
+            + " *[\\])])|" + VERSION);
+
+    private static final Pattern PATH_NAME = Pattern.compile("[^/\"\r\n\0]+(/[^/\"\r\n\0]+)*");
+
+    private String symbolicName = "org.example.deployment.package";
+
+    private String version = "1.2.3.SNAPSHOT";
+
+    private String range = "[1.0.0,2.0.0)";
+
+    private String path = "bundles/org.example.bundle-1.2.3.jar";
+
+    @Benchmark
+    public void checker(Blackhole blackhole) {
+        blackhole.consume(Checker.checkBundleSymbolicName(symbolicName));
+        blackhole.consume(Checker.checkVersion(version));
+        blackhole.consume(Checker.checkVersionRange(range));
+        blackhole.consume(Checker.checkPathName(path));
+    }
+
+    @Benchmark
+    public void patterns(Blackhole blackhole) {
+        blackhole.consume(SYMBOLIC_NAME.matcher(symbolicName).matches());
+        blackhole.consume(VERSION_PATTERN.matcher(version).matches());
+        blackhole.consume(VERSION_RANGE.matcher(range).matches());
+        blackhole.consume(PATH_NAME.matcher(path).matches());
+    }
+}
@@ -0,0 +1,75 @@
+package org.organicelement.deployment.model.utils;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Reads the manifest of a bundle with {@link BundleMetadata}, compared with
+ * opening the bundle as a verified jar file.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class BundleMetadataBenchmark {
+
+    @Param({ "500" })
+    private int entries;
+
+    private File bundle;
+
+    @Setup
+    public void setUp() throws IOException {
+        bundle = File.createTempFile("metadata", ".jar");
+        Manifest mf = new Manifest();
+        mf.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+        mf.getMainAttributes().putValue("Bundle-SymbolicName", "org.example.bundle");
+        mf.getMainAttributes().putValue("Bundle-Version", "1.2.3");
+        mf.getMainAttributes().putValue("Export-Package", "org.example.a;version=\"1.0\",org.example.b");
+        mf.getMainAttributes().putValue("Import-Package", "org.osgi.framework;version=\"[1.5,2)\"");
+        JarOutputStream jos = new JarOutputStream(new FileOutputStream(bundle), mf);
+        byte[] data = new byte[2048];
+        for (int i = 0; i < entries; i++) {
+            jos.putNextEntry(new JarEntry("org/example/Class" + i + ".class"));
+            jos.write(data);
+            jos.closeEntry();
+        }
+        jos.close();
+    }
+
+    @TearDown
+    public void tearDown() {
+        bundle.delete();
+    }
+
+    @Benchmark
+    public BundleMetadata read() throws IOException {
+        return BundleMetadata.read(bundle);
+    }
+
+    @Benchmark
+    public Manifest jarFile() throws IOException {
+        JarFile jar = new JarFile(bundle);
+        try {
+            return jar.getManifest();
+        } finally {
+            jar.close();
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package org.organicelement.deployment.model.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Adds bundles of 200 classes, every tenth one also in the previous bundle,
+ * to a class space. Ten times more bundles should take about ten times
+ * longer.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ClassSpaceBenchmark {
+
+    @Param({ "50", "500" })
+    private int bundles;
+
+    private List<List<String>> entries;
+
+    @Setup
+    public void setUp() {
+        entries = new ArrayList<List<String>>();
+        for (int i = 0; i < bundles; i++) {
+            entries.add(createEntries(i, 200));
+        }
+    }
+
+    private static List<String> createEntries(int bundle, int classes) {
+        List<String> entries = new ArrayList<String>(classes);
+        for (int i = 0; i < classes; i++) {
+            int owner = i % 10 == 0 ? bundle - 1 : bundle;
+            int index = i % 10 == 0 ? i + 1 : i;
+            entries.add("org/example/b" + owner + "/p" + (index % 20) + "/C" + index + ".class");
+        }
+        return entries;
+    }
+
+    @Benchmark
+    public int analyse() {
+        ClassSpace space = new ClassSpace();
+        for (int i = 0; i < bundles; i++) {
+            space.add("b" + i, entries.get(i), null);
+        }
+        return space.getDuplicateClasses().size() + space.getSplitPackages().size();
+    }
+}
@@ -0,0 +1,50 @@
+package org.organicelement.deployment.model.utils;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Parses and prints back an Import-Package header. The time should grow
+ * linearly with the number of packages.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class HeaderParserBenchmark {
+
+    @Param({ "2000", "20000" })
+    private int packages;
+
+    private String header;
+
+    @Setup
+    public void setUp() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < packages; i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append("org.example.pkg").append(i);
+            if (i % 2 == 0) {
+                sb.append(";version=\"[1.").append(i).append(",2)\"");
+            }
+            if (i % 5 == 0) {
+                sb.append(";resolution:=optional");
+            }
+        }
+        header = sb.toString();
+    }
+
+    @Benchmark
+    public String parseAndPrint() {
+        return HeaderParser.print(HeaderParser.parse(header), "resolution:");
+    }
+}
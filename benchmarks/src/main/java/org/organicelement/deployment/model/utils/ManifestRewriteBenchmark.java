@@ -0,0 +1,133 @@
+package org.organicelement.deployment.model.utils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.util.Enumeration;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Replaces the manifest of a bundle, either copying the other entries
+ * verbatim with {@link ZipWriter} or inflating and deflating them again
+ * through {@link JarOutputStream}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ManifestRewriteBenchmark {
+
+    @Param({ "2000" })
+    private int entries;
+
+    private File bundle;
+
+    private byte[] manifest;
+
+    @Setup
+    public void setUp() throws IOException {
+        bundle = File.createTempFile("bundle", ".jar");
+        Manifest mf = new Manifest();
+        mf.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+        mf.getMainAttributes().putValue("Bundle-SymbolicName", "org.example.bundle");
+        JarOutputStream jos = new JarOutputStream(new FileOutputStream(bundle), mf);
+        Random random = new Random(42);
+        byte[] data = new byte[4096];
+        for (int i = 0; i < entries; i++) {
+            jos.putNextEntry(new JarEntry("org/example/Class" + i + ".class"));
+            // Half random, half repeated so that entries actually compress.
+            random.nextBytes(data);
+            jos.write(data, 0, data.length / 2);
+            jos.write(new byte[data.length / 2]);
+            jos.closeEntry();
+        }
+        jos.close();
+
+        mf.getMainAttributes().putValue("DeploymentPackage-Missing", "true");
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        mf.write(bos);
+        manifest = bos.toByteArray();
+    }
+
+    @TearDown
+    public void tearDown() {
+        bundle.delete();
+    }
+
+    @Benchmark
+    public int rawCopy() throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        ZipDirectory directory = ZipDirectory.read(bundle);
+        RandomAccessFile raf = new RandomAccessFile(bundle, "r");
+        try {
+            ZipWriter writer = new ZipWriter(bos);
+            writer.write(JarFile.MANIFEST_NAME, manifest);
+            for (ZipDirectory.Entry entry : directory.getEntries()) {
+                if (!entry.getName().equalsIgnoreCase(JarFile.MANIFEST_NAME)) {
+                    writer.copy(raf, entry);
+                }
+            }
+            writer.finish();
+        } finally {
+            raf.close();
+        }
+        return bos.size();
+    }
+
+    @Benchmark
+    public int rewrite() throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        JarFile jar = new JarFile(bundle, false);
+        try {
+            JarOutputStream jos = new JarOutputStream(bos);
+            jos.putNextEntry(new JarEntry(JarFile.MANIFEST_NAME));
+            jos.write(manifest);
+            jos.closeEntry();
+            byte[] buffer = new byte[65536];
+            for (Enumeration<JarEntry> e = jar.entries(); e.hasMoreElements();) {
+                JarEntry entry = e.nextElement();
+                if (entry.getName().equalsIgnoreCase(JarFile.MANIFEST_NAME)) {
+                    continue;
+                }
+                jos.putNextEntry(new JarEntry(entry.getName()));
+                InputStream is = jar.getInputStream(entry);
+                try {
+                    copy(is, jos, buffer);
+                } finally {
+                    is.close();
+                }
+                jos.closeEntry();
+            }
+            jos.finish();
+        } finally {
+            jar.close();
+        }
+        return bos.size();
+    }
+
+    private static void copy(InputStream is, OutputStream os, byte[] buffer) throws IOException {
+        int read;
+        while ((read = is.read(buffer)) != -1) {
+            os.write(buffer, 0, read);
+        }
+    }
+}
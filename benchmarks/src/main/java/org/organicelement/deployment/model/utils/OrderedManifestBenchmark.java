@@ -0,0 +1,75 @@
+package org.organicelement.deployment.model.utils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+import java.util.jar.Attributes;
+import java.util.jar.Manifest;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Writes a deployment package manifest with {@link OrderedManifest},
+ * compared with a plain, unordered {@link Manifest}. The time should grow
+ * linearly with the number of sections.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class OrderedManifestBenchmark {
+
+    private static final OutputStream DISCARD = new OutputStream() {
+
+        @Override
+        public void write(int b) {
+            // Discarded.
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            // Discarded.
+        }
+    };
+
+    @Param({ "2000", "10000" })
+    private int sections;
+
+    private Manifest ordered;
+
+    private Manifest plain;
+
+    @Setup
+    public void setUp() {
+        ordered = fill(new OrderedManifest());
+        plain = fill(new Manifest());
+    }
+
+    private Manifest fill(Manifest manifest) {
+        manifest.getMainAttributes().putValue("Manifest-Version", "1.0");
+        manifest.getMainAttributes().putValue("DeploymentPackage-SymbolicName", "org.example.dp");
+        for (int i = 0; i < sections; i++) {
+            Attributes attr = new Attributes();
+            attr.putValue("Bundle-SymbolicName", "org.example.bundle" + i);
+            attr.putValue("Name-Digest", "aGVsbG8gd29ybGQgaGVsbG8gd29ybGQ=");
+            manifest.getEntries().put("bundles/org.example.bundle" + (sections - i) + ".jar", attr);
+        }
+        return manifest;
+    }
+
+    @Benchmark
+    public void ordered() throws IOException {
+        ordered.write(DISCARD);
+    }
+
+    @Benchmark
+    public void plain() throws IOException {
+        plain.write(DISCARD);
+    }
+}
@@ -0,0 +1,54 @@
+package org.organicelement.deployment.model.utils;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Checks an Import-Package header against the exports of a bundle. The time
+ * should grow linearly with the number of imports.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PackageIndexBenchmark {
+
+    @Param({ "2000", "20000" })
+    private int packages;
+
+    private PackageIndex index;
+
+    private String imports;
+
+    @Setup
+    public void setUp() {
+        index = new PackageIndex();
+        index.addExports("a", createHeader(packages, true));
+        imports = createHeader(packages, false);
+    }
+
+    private static String createHeader(int packages, boolean exports) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < packages; i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append("org.example.pkg").append(i);
+            sb.append(exports ? ";version=1." + i : ";version=\"[1." + i + ",2)\"");
+        }
+        return sb.toString();
+    }
+
+    @Benchmark
+    public List<String> getUnresolved() {
+        return index.getUnresolved("x", imports);
+    }
+}
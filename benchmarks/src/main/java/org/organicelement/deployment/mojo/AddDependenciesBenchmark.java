@@ -0,0 +1,68 @@
+package org.organicelement.deployment.mojo;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.maven.model.Dependency;
+import org.apache.maven.model.Model;
+import org.apache.maven.project.MavenProject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Merges the project dependencies into a package declaring half of them,
+ * then looks up every dependency version. Multiplying the number of
+ * dependencies by 8 should multiply the time by about 8.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class AddDependenciesBenchmark {
+
+    @Param({ "2000", "16000" })
+    private int dependencies;
+
+    private DeploymentPackageMojo mojo;
+
+    private DeploymentPackageMetadata dpInfo;
+
+    @Setup(Level.Invocation)
+    public void setUp() {
+        Model model = new Model();
+        for (int i = 0; i < dependencies; i++) {
+            Dependency dep = new Dependency();
+            dep.setGroupId("org.example.group" + (i % 50));
+            dep.setArtifactId("bundle" + i);
+            dep.setVersion("1.0." + i);
+            model.addDependency(dep);
+        }
+        mojo = new DeploymentPackageMojo();
+        mojo.setProject(new MavenProject(model));
+
+        dpInfo = new DeploymentPackageMetadata();
+        for (int i = 0; i < dependencies / 2; i++) {
+            BundleResource bres = new BundleResource();
+            bres.setGroupId("org.example.group" + (i % 50));
+            bres.setArtifactId("bundle" + i);
+            dpInfo.getResources().add(bres);
+        }
+    }
+
+    @Benchmark
+    public int addDependencies() {
+        mojo.addDependencies(dpInfo);
+        int found = 0;
+        for (int i = 0; i < dependencies; i++) {
+            if (mojo.getDependencyVersion("org.example.group" + (i % 50), "bundle" + i, null) != null) {
+                found++;
+            }
+        }
+        return found;
+    }
+}
@@ -0,0 +1,130 @@
+package org.organicelement.deployment.mojo.transform;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.organicelement.deployment.mojo.BundleHeader;
+
+/**
+ * Applies one transformer, then four transformers in a single pass, then the
+ * same four transformers one bundle rewrite each.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class BundlePipelineBenchmark {
+
+    @Param({ "2000" })
+    private int entries;
+
+    private File source;
+
+    private File target;
+
+    private File intermediate;
+
+    private List<BundleTransformer> transformers;
+
+    @Setup
+    public void setUp() throws IOException {
+        source = File.createTempFile("source", ".jar");
+        target = File.createTempFile("target", ".jar");
+        intermediate = File.createTempFile("intermediate", ".jar");
+
+        Manifest mf = new Manifest();
+        mf.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+        mf.getMainAttributes().putValue("Bundle-SymbolicName", "org.example.bundle");
+        JarOutputStream jos = new JarOutputStream(new FileOutputStream(source), mf);
+        Random random = new Random(42);
+        byte[] data = new byte[4096];
+        for (int i = 0; i < entries; i++) {
+            jos.putNextEntry(new JarEntry("org/example/Class" + i + ".class"));
+            random.nextBytes(data);
+            jos.write(data, 0, data.length / 2);
+            jos.write(new byte[data.length / 2]);
+            jos.closeEntry();
+            if (i % 10 == 0) {
+                jos.putNextEntry(new JarEntry("org/example/Class" + i + ".java"));
+                jos.write(data, 0, 100);
+                jos.closeEntry();
+            }
+        }
+        jos.close();
+
+        transformers = new ArrayList<BundleTransformer>();
+        transformers.add(header("X-First", "1"));
+        transformers.add(header("X-Second", "2"));
+        transformers.add(exclude("**/*.java"));
+        transformers.add(exclude("OSGI-OPT/"));
+    }
+
+    @TearDown
+    public void tearDown() {
+        source.delete();
+        target.delete();
+        intermediate.delete();
+    }
+
+    private static HeaderTransformer header(String name, String value) {
+        return new HeaderTransformer(Collections.singletonList(new BundleHeader(name, value)));
+    }
+
+    private static EntryFilterTransformer exclude(String pattern) {
+        EntryFilterTransformer filter = new EntryFilterTransformer();
+        filter.setExcludes(new ArrayList<String>(Arrays.asList(pattern)));
+        return filter;
+    }
+
+    private static void transform(BundlePipeline pipeline, File from, File to) throws IOException {
+        OutputStream os = new FileOutputStream(to);
+        try {
+            pipeline.plan(from).write(os);
+        } finally {
+            os.close();
+        }
+    }
+
+    @Benchmark
+    public long oneTransformer() throws IOException {
+        transform(new BundlePipeline(transformers.subList(0, 1)), source, target);
+        return target.length();
+    }
+
+    @Benchmark
+    public long singlePass() throws IOException {
+        transform(new BundlePipeline(transformers), source, target);
+        return target.length();
+    }
+
+    @Benchmark
+    public long separatePasses() throws IOException {
+        File in = source;
+        for (BundleTransformer transformer : transformers) {
+            File out = in == intermediate ? target : intermediate;
+            transform(new BundlePipeline(Collections.singletonList(transformer)), in, out);
+            in = out;
+        }
+        return in.length();
+    }
+}
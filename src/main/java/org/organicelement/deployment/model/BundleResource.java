@@ -1,5 +1,6 @@
 package org.organicelement.deployment.model;
 
+import org.organicelement.deployment.model.utils.BundleMetadata;
 import org.organicelement.deployment.model.utils.Handle;
 import org.organicelement.deployment.model.utils.Store;
 
@@ -7,8 +8,6 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
-import java.util.jar.JarFile;
-import java.util.jar.Manifest;
 
 public class BundleResource {
 
@@ -24,6 +23,8 @@ public class BundleResource {
 
     private Handle handle;
 
+    private BundleMetadata metadata;
+
     public BundleResource setPath(String value) {
         name = value;
         return this;
@@ -35,6 +36,23 @@ public class BundleResource {
         return this;
     }
 
+    public BundleResource setFile(File value) throws IOException {
+        handle = Store.STORE.store(value);
+        analyze();
+        return this;
+    }
+
+    /**
+     * @param value the handle of already stored content
+     * @return this resource
+     * @throws IOException if the content cannot be analyzed
+     */
+    public BundleResource setHandle(Handle value) throws IOException {
+        handle = value;
+        analyze();
+        return this;
+    }
+
     public BundleResource setSymbolicName(String value) {
         symbolicName = value;
         return this;
@@ -82,21 +100,10 @@ public class BundleResource {
             return;
         }
 
-        JarFile jar = new JarFile(new File(Store.STORE.getLocation(handle)));
-        Manifest man = jar.getManifest();
-        //TODO Does this really fit the spec ?
-
-        // Remove the :=singleton=true part is present.
-        String symb = man.getMainAttributes().getValue(
-                Constants.BUNDLE_SYMBOLICNAME);
-        int index = symb.indexOf(";singleton:=");
-        if (index != -1) {
-            setSymbolicName(symb.substring(0, index));
-        } else {
-            setSymbolicName(symb);
-        }
-
-        setVersion(man.getMainAttributes().getValue(Constants.BUNDLE_VERSION));
+        // Only the manifest is read, once per content. The symbolic name comes without its directives.
+        metadata = Store.STORE.getMetadata(handle);
+        setSymbolicName(metadata.getSymbolicName());
+        setVersion(metadata.getVersion());
 
         if (name == null  && symbolicName != null) {
             name = symbolicName +  ".jar";
@@ -104,6 +111,14 @@ public class BundleResource {
 
     }
 
+    /**
+     * @return the metadata read from the bundle manifest, <code>null</code>
+     *         until the content is set
+     */
+    public BundleMetadata getMetadata() {
+        return metadata;
+    }
+
     public InputStream getInputStream() throws IOException {
         return Store.STORE.load(handle);
     }
@@ -112,10 +127,17 @@ public class BundleResource {
         if (handle == null) {
             return false;
         } else {
-            return new File(Store.STORE.getLocation(handle)).exists();
+            return Store.STORE.exists(handle);
         }
     }
 
+    /**
+     * @return the handle of the content, <code>null</code> until set
+     */
+    Handle getHandle() {
+        return handle;
+    }
+
     public Object getSHA1() {
        return handle.getSHA1();
     }
@@ -1,51 +1,166 @@
 package org.organicelement.deployment.model;
 
-import java.util.regex.Pattern;
-
 
+/**
+ * Validates the values of the deployment package headers. Every predicate
+ * scans its value once, without backtracking.
+ */
 public class Checker {
 
-    public static final Pattern UNIQUE_NAME_PATTERN = Pattern.compile(".+(\\..+)*");
-
-    public static final Pattern PATH_NAME_PATTERN = Pattern.compile("[A-Za-z0-9_\\.-]+");
-
-    public static final String VERSION_PATTERN_STR = "[0-9]+(\\.[0-9]+(\\.[0-9]+(\\.[0-9A-Za-z_-]+)?)?)?";
-
-    public final static Pattern VERSION_PATTERN = Pattern.compile(VERSION_PATTERN_STR);
-
-    public final static Pattern SYMBOLICNAME_PATTERN = Pattern.compile("[a-zA-Z0-9_-]+(\\.[a-zA-Z0-9_-]+)*");
-
-    public final static Pattern VERSIONRANGE_PATTERN = Pattern.compile("((\\(|\\[)"
-            + VERSION_PATTERN_STR + "," + VERSION_PATTERN_STR + "(\\]|\\)))|" + VERSION_PATTERN_STR);
-
-
+    /**
+     * Any value on a single line, as the historical
+     * <code>.+(\..+)*</code> pattern. Unique names are not restricted to
+     * Java identifiers, so that symbolic names derived from Maven
+     * coordinates, e.g. <code>org.example.my-dp</code>, remain valid.
+     */
     public static boolean checkUniqueName(String value) {
-        return UNIQUE_NAME_PATTERN.matcher(value).matches();
+        if (value.length() == 0) {
+            return false;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029') {
+                return false;
+            }
+        }
+        return true;
     }
 
+    /**
+     * <pre>
+     * version-range ::= interval | version
+     * interval ::= ( '[' | '(' ) version ',' version ( ']' | ')' )
+     * </pre>
+     * White space is allowed around the versions of an interval.
+     */
     public static boolean checkVersionRange(String value) {
-        return VERSIONRANGE_PATTERN.matcher(value).matches();
+        int length = value.length();
+        if (length == 0) {
+            return false;
+        }
+        char first = value.charAt(0);
+        if (first != '[' && first != '(') {
+            return checkVersion(value);
+        }
+        char last = value.charAt(length - 1);
+        if (last != ']' && last != ')') {
+            return false;
+        }
+        int comma = value.indexOf(',');
+        if (comma == -1) {
+            return false;
+        }
+        return isVersion(value, skipWhitespace(value, 1), trimEnd(value, 1, comma))
+                && isVersion(value, skipWhitespace(value, comma + 1), trimEnd(value, comma + 1, length - 1));
     }
 
+    /**
+     * <pre>
+     * symbolic-name ::= token ( '.' token ) *
+     * token ::= ( alphanum | '_' | '-' ) +
+     * </pre>
+     */
     public static boolean checkBundleSymbolicName(String value) {
-        return SYMBOLICNAME_PATTERN.matcher(value).matches();
+        int length = value.length();
+        int tokenLength = 0;
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c == '.') {
+                if (tokenLength == 0) {
+                    return false;
+                }
+                tokenLength = 0;
+            } else if (isAlphanum(c) || c == '_' || c == '-') {
+                tokenLength++;
+            } else {
+                return false;
+            }
+        }
+        return tokenLength > 0;
     }
 
+    /**
+     * <pre>
+     * version ::= major( '.' minor ( '.' micro ( '.' qualifier )? )? )?
+     * qualifier ::= ( alphanum | '_' | '-' ) +
+     * </pre>
+     */
     public static boolean checkVersion(String value) {
-        return VERSION_PATTERN.matcher(value).matches();
+        return isVersion(value, 0, value.length());
     }
 
+    /**
+     * A processor PID is a unique name.
+     */
     public static boolean checkPID(String value) {
-        //TODO Is it really unique name ?
         return checkUniqueName(value);
     }
 
+    /**
+     * A resource name, from the Deployment Admin specification (114.3.2):
+     * <pre>
+     * path-name ::= path-element ( '/' path-element ) *
+     * path-element ::= [^/"\#x0D\#x0A\#x00] +
+     * </pre>
+     */
     public static boolean checkPathName(String value) {
-        return PATH_NAME_PATTERN.matcher(value).matches();
+        int length = value.length();
+        int elementLength = 0;
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c == '/') {
+                if (elementLength == 0) {
+                    return false;
+                }
+                elementLength = 0;
+            } else if (c == '"' || c == '\r' || c == '\n' || c == '\0') {
+                return false;
+            } else {
+                elementLength++;
+            }
+        }
+        return elementLength > 0;
     }
 
+    private static boolean isVersion(String value, int start, int end) {
+        int part = 0;
+        int partLength = 0;
+        for (int i = start; i < end; i++) {
+            char c = value.charAt(i);
+            if (c == '.') {
+                if (partLength == 0 || part == 3) {
+                    return false;
+                }
+                part++;
+                partLength = 0;
+            } else if (part < 3 ? isDigit(c) : isAlphanum(c) || c == '_' || c == '-') {
+                partLength++;
+            } else {
+                return false;
+            }
+        }
+        return partLength > 0;
+    }
 
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
 
+    private static boolean isAlphanum(char c) {
+        return isDigit(c) || (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
 
+    private static int skipWhitespace(String value, int index) {
+        while (index < value.length() && value.charAt(index) == ' ') {
+            index++;
+        }
+        return index;
+    }
 
+    private static int trimEnd(String value, int start, int end) {
+        while (end > start && value.charAt(end - 1) == ' ') {
+            end--;
+        }
+        return end;
+    }
 }
@@ -1,11 +1,44 @@
 package org.organicelement.deployment.model;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
 public class CheckingException extends Exception {
 
     private static final long serialVersionUID = -6135511470322984266L;
 
+    private final List<String> violations;
+
     public CheckingException(String message) {
         super(message);
+        violations = Collections.singletonList(message);
+    }
+
+    /**
+     * @param violations the violations found, at least one
+     */
+    public CheckingException(List<String> violations) {
+        super(getMessage(violations));
+        this.violations = Collections.unmodifiableList(new ArrayList<String>(violations));
+    }
+
+    /**
+     * @return every violation found, in package order
+     */
+    public List<String> getViolations() {
+        return violations;
+    }
+
+    private static String getMessage(List<String> violations) {
+        if (violations.size() == 1) {
+            return violations.get(0);
+        }
+        StringBuilder sb = new StringBuilder().append(violations.size()).append(" violations :");
+        for (String violation : violations) {
+            sb.append("\n  ").append(violation);
+        }
+        return sb.toString();
     }
 
 }
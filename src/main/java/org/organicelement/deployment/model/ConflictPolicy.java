@@ -0,0 +1,26 @@
+package org.organicelement.deployment.model;
+
+/**
+ * How a deployment package handles a bundle or resource added while another
+ * one, with the same symbolic name, section name or content, is already
+ * there. The package must not contain two bundles with the same symbolic
+ * name, they would share their location (114.3.4.7).
+ */
+public enum ConflictPolicy {
+
+    /**
+     * Keeps the bundle with the highest version, the first one on a tie or
+     * for resources.
+     */
+    HIGHEST_VERSION,
+
+    /**
+     * Keeps the first one added.
+     */
+    FIRST_WINS,
+
+    /**
+     * Keeps the first one added and fails the check of the package.
+     */
+    FAIL
+}
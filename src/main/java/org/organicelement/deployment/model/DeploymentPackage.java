@@ -9,16 +9,26 @@ import java.io.OutputStream;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.jar.Attributes;
 import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
 import java.util.jar.JarOutputStream;
-import java.util.jar.Manifest;
 import java.util.zip.ZipEntry;
 
-import org.organicelement.deployment.model.utils.OrderedManifest;
+import org.organicelement.deployment.model.utils.ClassSpace;
+import org.organicelement.deployment.model.utils.ManifestWriter;
+import org.organicelement.deployment.model.utils.PackageIndex;
 import org.organicelement.deployment.model.utils.StreamUtils;
+import org.organicelement.deployment.model.utils.Version;
 
 
 public class DeploymentPackage {
@@ -35,10 +45,38 @@ public class DeploymentPackage {
     private String address;
     private String name;
     private String copyright;
-    private List<BundleResource> bundles = new ArrayList<BundleResource>();
-    private List<Resource> resources = new ArrayList<Resource>();
+    private ConflictPolicy conflictPolicy = ConflictPolicy.HIGHEST_VERSION;
+
+    /**
+     * The bundles, in order, keyed on their symbolic name, or on themselves
+     * without one.
+     */
+    private Map<Object, BundleResource> bundles = new LinkedHashMap<Object, BundleResource>();
+    private Map<String, BundleResource> bundlesByName = new HashMap<String, BundleResource>();
+    private Map<String, BundleResource> bundlesBySHA = new HashMap<String, BundleResource>();
+
+    /**
+     * The resources, in order, keyed on their name, or on themselves
+     * without one.
+     */
+    private Map<Object, Resource> resources = new LinkedHashMap<Object, Resource>();
+
+    /**
+     * The keys each bundle and resource is indexed with, as they were added.
+     */
+    private Map<Object, Object[]> keys = new IdentityHashMap<Object, Object[]>();
+
+    /**
+     * The conflicts met while adding bundles and resources.
+     */
+    private List<String> conflicts = new ArrayList<String>();
     private Map<String,String> entries = new HashMap<String,String>();
 
+    /**
+     * The state of the package when last checked successfully.
+     */
+    private List<Object> checkedState;
+
     public DeploymentPackage setSymbolicName(String value) {
         symbolicName = value;
         entries.put(Constants.DEPLOYMENTPACKAGE_SYMBOLICMAME, value);
@@ -118,78 +156,195 @@ public class DeploymentPackage {
         return this;
     }
 
+    /**
+     * Sets how the bundles and resources added afterwards are handled when
+     * they conflict with those already added.
+     * @param policy the policy, {@link ConflictPolicy#HIGHEST_VERSION} by
+     *        default
+     * @return this package
+     */
+    public DeploymentPackage setConflictPolicy(ConflictPolicy policy) {
+        conflictPolicy = policy;
+        return this;
+    }
+
+    /**
+     * Adds a bundle, unless a bundle with the same symbolic name, section
+     * name or content is already there. The conflict is then resolved
+     * according to the conflict policy and recorded.
+     * @param bundle the bundle
+     * @return this package
+     */
     public DeploymentPackage addBundle(BundleResource bundle) {
-        bundles.add(bundle);
+        if (keys.containsKey(bundle)) {
+            return this;
+        }
+        String sha = bundle.getHandle() == null ? null : bundle.getHandle().getSHA1();
+        BundleResource existing = null;
+        if (bundle.getSymbolicName() != null) {
+            existing = bundles.get(bundle.getSymbolicName());
+        }
+        if (existing == null && bundle.getName() != null) {
+            existing = bundlesByName.get(bundle.getName());
+        }
+        if (existing == null && sha != null) {
+            existing = bundlesBySHA.get(sha);
+        }
+
+        if (existing == null && bundle.getName() != null && resources.containsKey(bundle.getName())) {
+            conflicts.add(describe(bundle) + " ignored, " + bundle.getName() + " is a resource");
+        } else if (existing == null) {
+            Object key = bundle.getSymbolicName() == null ? bundle : bundle.getSymbolicName();
+            bundles.put(key, bundle);
+            index(bundle, key, sha);
+        } else if (conflictPolicy == ConflictPolicy.HIGHEST_VERSION && isHigher(bundle, existing)) {
+            // Same symbolic name, the bundle takes the place of the existing one.
+            Object key = keys.get(existing)[0];
+            unindex(existing);
+            bundles.put(key, bundle);
+            index(bundle, key, sha);
+            conflicts.add(describe(existing) + " replaced by " + describe(bundle));
+        } else {
+            conflicts.add(describe(bundle) + " ignored, conflicts with " + describe(existing));
+        }
         return this;
     }
 
     public DeploymentPackage addBundle(URL url) throws IOException {
         BundleResource bundle = new BundleResource()
             .setURL(url);
-        bundles.add(bundle);
-        return this;
+        return addBundle(bundle);
     }
 
     public DeploymentPackage addBundle(URL url, String name) throws IOException {
         BundleResource bundle = new BundleResource()
             .setURL(url).setPath(name);
-        bundles.add(bundle);
-        return this;
+        return addBundle(bundle);
     }
 
     public DeploymentPackage removeBundle(BundleResource bundle) {
-        bundles.remove(bundle);
+        if (keys.containsKey(bundle)) {
+            bundles.remove(keys.get(bundle)[0]);
+            unindex(bundle);
+        }
         return this;
     }
 
-    public DeploymentPackage removeBundle(String sn) {
-        for (BundleResource br : bundles) {
-            if (br.getSymbolicName().equals(sn)) {
-                bundles.remove(br);
-                return this;
-            }
+    /**
+     * Indexes again a bundle of the package whose content changed, e.g.
+     * rebuilt in watch mode. The bundle keeps its place in the package as
+     * long as its symbolic name does not change, otherwise it is removed and
+     * added again like a new bundle.
+     * @param bundle the bundle
+     * @return this package
+     */
+    public DeploymentPackage updateBundle(BundleResource bundle) {
+        Object[] key = keys.get(bundle);
+        if (key == null) {
+            return addBundle(bundle);
+        }
+        Object expected = bundle.getSymbolicName() == null ? bundle : bundle.getSymbolicName();
+        if (!expected.equals(key[0])) {
+            return removeBundle(bundle).addBundle(bundle);
+        }
+        unindex(bundle);
+        index(bundle, key[0], bundle.getHandle() == null ? null : bundle.getHandle().getSHA1());
+        synchronized (this) {
+            checkedState = null;
         }
         return this;
     }
 
+    public DeploymentPackage removeBundle(String sn) {
+        BundleResource br = bundles.get(sn);
+        return br == null ? this : removeBundle(br);
+    }
+
     public DeploymentPackage removeBundleByName(String name) {
-        for (BundleResource br : bundles) {
-            if (br.getName().equals(name)) {
-                bundles.remove(br);
-                return this;
-            }
-        }
-        return this;
+        BundleResource br = bundlesByName.get(name);
+        return br == null ? this : removeBundle(br);
     }
 
+    /**
+     * Adds a resource, unless a resource or a bundle with the same name is
+     * already there. The conflict is then recorded.
+     * @param res the resource
+     * @return this package
+     */
     public DeploymentPackage addResource(Resource res) {
-        resources.add(res);
+        if (keys.containsKey(res)) {
+            return this;
+        }
+        Resource existing = res.getName() == null ? null : resources.get(res.getName());
+        if (existing != null) {
+            conflicts.add(res.getName() + " ignored, conflicts with the resource " + existing.getName());
+        } else if (res.getName() != null && bundlesByName.containsKey(res.getName())) {
+            conflicts.add(res.getName() + " ignored, conflicts with "
+                    + describe(bundlesByName.get(res.getName())));
+        } else {
+            Object key = res.getName() == null ? res : res.getName();
+            resources.put(key, res);
+            keys.put(res, new Object[] { key });
+        }
         return this;
     }
 
     public DeploymentPackage addResource(URL url, String resourceProcessor) throws IOException {
-        resources.add(new Resource().setURL(url).setProcessor(resourceProcessor));
-        return this;
+        return addResource(new Resource().setURL(url).setProcessor(resourceProcessor));
     }
 
     public DeploymentPackage addResource(URL url, String resourceProcessor, String name) throws IOException {
-        resources.add(new Resource().setURL(url).setProcessor(resourceProcessor).setPath(name));
-        return this;
+        return addResource(new Resource().setURL(url).setProcessor(resourceProcessor).setPath(name));
     }
 
     public DeploymentPackage removeResource(Resource res) {
-        resources.remove(res);
+        Object[] key = keys.remove(res);
+        if (key != null) {
+            resources.remove(key[0]);
+        }
         return this;
     }
 
     public DeploymentPackage removeResource(String n) {
-        for (Resource res : resources) {
-            if (res.getName().equals(n)) {
-                resources.remove(res);
-                return this;
-            }
+        Resource res = resources.get(n);
+        return res == null ? this : removeResource(res);
+    }
+
+    private void index(BundleResource bundle, Object key, String sha) {
+        if (bundle.getName() != null) {
+            bundlesByName.put(bundle.getName(), bundle);
+        }
+        if (sha != null) {
+            bundlesBySHA.put(sha, bundle);
+        }
+        keys.put(bundle, new Object[] { key, bundle.getName(), sha });
+    }
+
+    private void unindex(BundleResource bundle) {
+        Object[] key = keys.remove(bundle);
+        if (bundlesByName.get(key[1]) == bundle) {
+            bundlesByName.remove(key[1]);
+        }
+        if (bundlesBySHA.get(key[2]) == bundle) {
+            bundlesBySHA.remove(key[2]);
         }
-        return this;
+    }
+
+    /**
+     * @return <code>true</code> if the bundle is a strictly higher version
+     *         of the existing one
+     */
+    private static boolean isHigher(BundleResource bundle, BundleResource existing) {
+        if (bundle.getSymbolicName() == null || !bundle.getSymbolicName().equals(existing.getSymbolicName())) {
+            return false;
+        }
+        Version version = Version.parse(bundle.getVersion());
+        Version existingVersion = Version.parse(existing.getVersion());
+        return version != null && (existingVersion == null || version.compareTo(existingVersion) > 0);
+    }
+
+    private static String describe(BundleResource bundle) {
+        return bundle.getSymbolicName() + " " + bundle.getVersion() + " (" + bundle.getName() + ")";
     }
 
     public String getSymbolicName() {
@@ -240,107 +395,282 @@ public class DeploymentPackage {
         return copyright;
     }
 
+    public ConflictPolicy getConflictPolicy() {
+        return conflictPolicy;
+    }
+
+    /**
+     * @return the bundles, in order, a copy
+     */
     public List<BundleResource> getBundles() {
-        return bundles;
+        return new ArrayList<BundleResource>(bundles.values());
     }
 
+    /**
+     * @return the resources, in order, a copy
+     */
     public List<Resource> getResources() {
-        return resources;
+        return new ArrayList<Resource>(resources.values());
+    }
+
+    /**
+     * @return the conflicts met while adding bundles and resources, with
+     *         how they were resolved
+     */
+    public List<String> getConflicts() {
+        return conflicts;
     }
 
     public Map<String, String> getEntries() {
         return entries;
     }
 
+    /**
+     * Checks the package sequentially.
+     * @see #check(int)
+     */
     public void check() throws CheckingException {
-        // Symbolic Name set (114.3.4.1)
-        if (symbolicName == null) {
-            throw new CheckingException(Constants.DEPLOYMENTPACKAGE_SYMBOLICMAME + " missing");
+        check(1);
+    }
+
+    /**
+     * Checks the package headers and its resources, the resources
+     * concurrently. Every violation is reported, not only the first one. A
+     * package left unchanged since its last successful check is not checked
+     * again.
+     * @param threads the maximum number of resources checked concurrently
+     * @throws CheckingException listing the violations
+     */
+    public void check(int threads) throws CheckingException {
+        List<Object> state = getState();
+        synchronized (this) {
+            if (state.equals(checkedState)) {
+                return;
+            }
         }
 
-        // Symbolic Name is an unique-name (114.3.4.1)
-        if (! Checker.checkUniqueName(symbolicName)) {
-            throw new CheckingException(symbolicName + " is not an unique name");
+        List<String> violations = new ArrayList<String>();
+        checkHeaders(violations);
+        if (conflictPolicy == ConflictPolicy.FAIL) {
+            violations.addAll(conflicts);
         }
 
-        // Version set (114.3.4.2)
-        if (version == null) {
-            throw new CheckingException(Constants.DEPLOYMENTPACKAGE_VERSION + " missing");
+        if (bundles.size() + resources.size() <= 1 || threads <= 1) {
+            for (BundleResource br : bundles.values()) {
+                violations.addAll(check(br));
+            }
+            for (Resource res : resources.values()) {
+                violations.addAll(check(res));
+            }
+        } else {
+            List<Callable<List<String>>> tasks = new ArrayList<Callable<List<String>>>();
+            for (final BundleResource br : bundles.values()) {
+                tasks.add(new Callable<List<String>>() {
+
+                    public List<String> call() {
+                        return check(br);
+                    }
+                });
+            }
+            for (final Resource res : resources.values()) {
+                tasks.add(new Callable<List<String>>() {
+
+                    public List<String> call() {
+                        return check(res);
+                    }
+                });
+            }
+
+            ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, tasks.size()));
+            try {
+                for (Future<List<String>> future : executor.invokeAll(tasks)) {
+                    violations.addAll(future.get());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CheckingException("Interrupted while checking the deployment package");
+            } catch (ExecutionException e) {
+                throw new CheckingException("Cannot check the deployment package : " + e.getCause());
+            } finally {
+                executor.shutdownNow();
+            }
         }
 
-        //Version is a Version (114.3.4.2)
-        if (! Checker.checkVersion(version)) {
-            throw new CheckingException(version + " is not an unique name");
+        if (!violations.isEmpty()) {
+            throw new CheckingException(violations);
+        }
+        synchronized (this) {
+            checkedState = state;
+        }
+    }
+
+    private void checkHeaders(List<String> violations) {
+        // Symbolic Name set (114.3.4.1)
+        if (symbolicName == null) {
+            violations.add(Constants.DEPLOYMENTPACKAGE_SYMBOLICMAME + " missing");
+        } else if (! Checker.checkUniqueName(symbolicName)) { // Symbolic Name is an unique-name (114.3.4.1)
+            violations.add(symbolicName + " is not an unique name");
+        }
+
+        // Version set (114.3.4.2)
+        if (version == null) {
+            violations.add(Constants.DEPLOYMENTPACKAGE_VERSION + " missing");
+        } else if (! Checker.checkVersion(version)) { //Version is a Version (114.3.4.2)
+            violations.add(version + " is not a valid version");
         }
 
         // Fix-Pack is a version-range or absent ( (114.3.4.3)
-        if (fixPack != null  && Checker.checkVersionRange(fixPack)) {
-            throw new CheckingException(fixPack + " is not a valid version range");
+        if (fixPack != null  && ! Checker.checkVersionRange(fixPack)) {
+            violations.add(fixPack + " is not a valid version range");
         }
+    }
 
-        for (BundleResource br : bundles) {
-            // Must exist ... Check the Handle
-            try {
-                if (! br.exists()) {
-                    throw new CheckingException("The bundle file does not exist : " + br.getSymbolicName());
-                }
-            } catch (IOException e) {
-                throw new CheckingException("The bundle cannot be loaded correctly : " + br.getSymbolicName());
+    private List<String> check(BundleResource br) {
+        List<String> violations = new ArrayList<String>();
+        // Must exist ... Check the Handle
+        try {
+            if (! br.exists()) {
+                violations.add("The bundle file does not exist : " + br.getSymbolicName());
             }
+        } catch (IOException e) {
+            violations.add("The bundle cannot be loaded correctly : " + br.getSymbolicName());
+        }
 
-            if (br.getSymbolicName() == null) { // 114.3.4.7
-                throw new CheckingException(Constants.BUNDLE_SYMBOLICNAME_ATTRIBUTE + " is missing for a bundle resource");
-            }
+        if (br.getSymbolicName() == null) { // 114.3.4.7
+            violations.add(Constants.BUNDLE_SYMBOLICNAME_ATTRIBUTE + " is missing for a bundle resource");
+        } else if (! Checker.checkBundleSymbolicName(br.getSymbolicName())) { // 114.3.4.7
+            violations.add(br.getSymbolicName() + " is not a valid symbolic name");
+        }
 
-            if (! Checker.checkBundleSymbolicName(br.getSymbolicName())) { // 114.3.4.7
-                throw new CheckingException(br.getSymbolicName() + " is not a valid symbolic name");
-            }
+        if (br.getVersion() == null) { // 114.3.4.8
+            violations.add(Constants.BUNDLE_VERSION_ATTRIBUTE + " is missing");
+        } else if (! Checker.checkVersion(br.getVersion())) { // 114.3.4.8
+            violations.add(br.getVersion() + " is not a valid version");
+        }
 
-            if (br.getVersion() == null) { // 114.3.4.8
-                throw new CheckingException(Constants.BUNDLE_VERSION_ATTRIBUTE + " is missing");
-            }
+        if (br.getName() == null) { // 114.3.3
+            violations.add("Section name is missing for " + br.getSymbolicName());
+        } else if (! Checker.checkPathName(br.getName())) { // 114.3.2
+            violations.add("Section name '" + br.getName() + "' is not a valid path");
+        }
 
-            if (! Checker.checkVersion(br.getVersion())) { // 114.3.4.8
-                throw new CheckingException(br.getVersion() + " is not a valid version");
-            }
+        if (fixPack == null && br.isMissing()) {
+            violations.add("Cannot use missing bundle " + br.getSymbolicName()
+                    + " if the package does not define the " + Constants.DEPLOYMENTPACKAGE_FIXPACK + " entry");
+        }
+        return violations;
+    }
 
-            if (br.getName() == null) { // 114.3.3
-                throw new CheckingException("Section name is missing for " + br.getSymbolicName());
+    private static List<String> check(Resource res) {
+        List<String> violations = new ArrayList<String>();
+        // Must exist ... Check the Handle
+        try {
+            if (! res.exists()) {
+                violations.add("The resource file does not exist : " + res.getName());
             }
+        } catch (IOException e) {
+            violations.add("The resource cannot be loaded correctly : " + res.getName());
+        }
 
-            //TODO Check path consistency
-//            if (! Checker.checkPathName(br.getName())) { // 114.3.2
-//                throw new CheckingException("Section name '" + br.getName() + "' is not a valid path");
-//            }
+        if (res.getName() == null) { // 114.3.3
+            violations.add("Section name is missing for a resource");
+        } else if (! Checker.checkPathName(res.getName())) { // 114.3.2
+            violations.add("Section name '" + res.getName() + "' is not a valid path");
         }
 
-        for (Resource res : resources) {
-            // Must exist ... Check the Handle
-            try {
-                if (! res.exists()) {
-                    throw new CheckingException("The resource file does not exist : " + res.getName());
+        //Removed getProcessor checking. It should be optional
+
+        //Check only if optional processor exists.
+        if (res.getProcessor()!= null && !Checker.checkPID(res.getProcessor())) { // 114.3.4.9
+            violations.add("'" + res.getProcessor() + "' is not a valid pid");
+        }
+        return violations;
+    }
+
+    /**
+     * @return the checked values of the package, equal as long as the
+     *         package is unchanged
+     */
+    private List<Object> getState() {
+        List<Object> state = new ArrayList<Object>();
+        state.add(new HashMap<String, String>(entries));
+        state.add(fixPack);
+        state.add(conflictPolicy);
+        state.add(conflicts.size());
+        for (BundleResource br : bundles.values()) {
+            state.add(br.getName());
+            state.add(br.getSymbolicName());
+            state.add(br.getVersion());
+            state.add(br.isMissing());
+            state.add(br.getHandle() == null ? null : br.getHandle().getSHA1());
+        }
+        state.add(null);
+        for (Resource res : resources.values()) {
+            state.add(res.getName());
+            state.add(res.getProcessor());
+            state.add(res.getHandle() == null ? null : res.getHandle().getSHA1());
+        }
+        return state;
+    }
+
+    /**
+     * Checks that the mandatory imports of every bundle are exported by a
+     * bundle of this package or by the target platform, with a matching
+     * version. All the unresolved imports are reported at once.
+     * @param platform the packages exported on the target, may be
+     *        <code>null</code>
+     * @throws CheckingException if an import does not resolve
+     */
+    public void checkResolution(PackageIndex platform) throws CheckingException {
+        PackageIndex index = new PackageIndex(platform);
+        for (BundleResource br : bundles.values()) {
+            if (br.getMetadata() != null) {
+                try {
+                    index.addExports(br.getMetadata());
+                } catch (IllegalArgumentException e) {
+                    throw new CheckingException("Invalid Export-Package header in " + br.getSymbolicName() + " : "
+                            + e.getMessage());
                 }
-            } catch (IOException e) {
-                throw new CheckingException("The resource cannot be loaded correctly : " + res.getName());
             }
+        }
 
-            if (res.getName() == null) { // 114.3.3
-                throw new CheckingException("Section name is missing for a resource");
+        StringBuilder unresolved = new StringBuilder();
+        int count = 0;
+        for (BundleResource br : bundles.values()) {
+            if (br.getMetadata() != null) {
+                for (String message : index.getUnresolved(br.getSymbolicName(), br.getMetadata().getImportPackage())) {
+                    unresolved.append("\n  ").append(message);
+                    count++;
+                }
             }
+        }
+        if (count > 0) {
+            throw new CheckingException(count + " imports do not resolve :" + unresolved);
+        }
+    }
 
-            //TODO Check path consistency
-//            if (! Checker.checkPathName(res.getName())) { // 114.3.2
-//                throw new CheckingException("Section name '" + res.getName() + "' is not a valid path");
-//            }
-
-            //Removed getProcessor checking. It should be optional
-
-            //Check only if optional processor exists.
-            if (res.getProcessor()!= null && !Checker.checkPID(res.getProcessor())) { // 114.3.4.9
-                throw new CheckingException(res.getProcessor() + "'" + res.getProcessor() + "' is not a valid pid");
+    /**
+     * Analyzes the packages and classes of the bundles, missing bundles
+     * excluded, from their central directory.
+     * @return the class space, with the split packages and the duplicate
+     *         classes
+     * @throws IOException if a bundle cannot be read
+     * @throws CheckingException if an Export-Package header is malformed
+     */
+    public ClassSpace getClassSpace() throws IOException, CheckingException {
+        ClassSpace space = new ClassSpace();
+        for (BundleResource br : bundles.values()) {
+            if (!br.isMissing() && br.getHandle() != null) {
+                try {
+                    space.add(br.getName(), ClassSpace.getClassEntries(br.getHandle()),
+                            br.getMetadata() == null ? null : br.getMetadata().getExportPackage());
+                } catch (IllegalArgumentException e) {
+                    throw new CheckingException("Invalid Export-Package header in " + br.getSymbolicName() + " : "
+                            + e.getMessage());
+                }
             }
         }
-
+        return space;
     }
 
     public void build(File to) throws IOException, CheckingException {
@@ -361,74 +691,28 @@ public class DeploymentPackage {
     }
 
     public InputStream build() throws CheckingException, IOException {
+        // Not checked again if the package is unchanged since the last check.
         check();
 
-        // 1. Manifest
-        Manifest manifestDP = new OrderedManifest();
-        // defaults
-        manifestDP.getMainAttributes().putValue( "Manifest-Version", "1.0" );
-        manifestDP.getMainAttributes().putValue( "Content-Type", "application/vnd.osgi.dp" );
-
-        // user defined
-        for( String key : entries.keySet()) {
-            manifestDP.getMainAttributes().putValue( key, entries.get( key ) );
-        }
-
-        /*
-         * First META-INF resources: META-INF/*.SF, META-INF/*.DSA, META-INF/*.RS
-         * Then OSGi-INF
-         * Then Bundles
-         * Then Resources
-         */
-        final Map<String, Attributes> entries = manifestDP.getEntries();
-        
-        for (BundleResource br : bundles) {
-            // extract meta data..
-            Attributes attr = new Attributes();
-            attr.putValue(Constants.BUNDLE_SYMBOLICNAME, br.getSymbolicName());
-            attr.putValue(Constants.SHA_ATTRIBUTE, br.getSHA1().toString());
-            attr.putValue(Constants.BUNDLE_VERSION, br.getVersion());
-            if (fixPack != null) {
-                attr.putValue(Constants.DEPLOYMENTPACKAGE_MISSING, Boolean.toString((br.isMissing())));
-            } else {
-            	if (br.isMissing()) {
-            		throw new CheckingException("Cannot use missing bundle if the package does not define the "
-            				+ Constants.DEPLOYMENTPACKAGE_FIXPACK + " entry");
-            	}
-            }
-            if (br.isCustomizer()) {
-                attr.putValue(Constants.DEPLOYMENTPACKAGE_CUSTOMIZER, Boolean.toString((br.isCustomizer())));
-            }
-            entries.put( br.getName(), attr );
-        }
-
-        for (Resource res : resources) {
-            // extract meta data..
-            Attributes attr = new Attributes();
-            attr.putValue(Constants.SHA_ATTRIBUTE, res.getSHA1().toString());
-            attr.putValue(Constants.RESOURCE_PROCESSOR, res.getProcessor());
-
-            entries.put( res.getName(), attr );
-        }
-        
-        // Manifest done, create the DP
-        //final PipedInputStream pin = new PipedInputStream();
-        //final PipedOutputStream pout = new PipedOutputStream(pin);
-        
         File tmp = File.createTempFile("dp-", ".dp");
         FileOutputStream t = new FileOutputStream(tmp);
-        final JarOutputStream jarOut = new JarOutputStream(t, manifestDP );
+        final JarOutputStream jarOut = new JarOutputStream(t);
 
         try {
 
+            // The manifest is streamed, the sections are never held in memory.
+            jarOut.putNextEntry(new ZipEntry(JarFile.MANIFEST_NAME));
+            writeManifest(jarOut);
+            jarOut.closeEntry();
+
             // Start file bundles
-            for (BundleResource br : bundles) {
+            for (BundleResource br : bundles.values()) {
                 if (!br.isMissing()) {
                 	  copy(br.getName(), br.getInputStream(), jarOut);
                 }
             }
 
-            for (Resource res : resources) {
+            for (Resource res : resources.values()) {
                 copy(res.getName(), res.getInputStream(), jarOut);
             }
 
@@ -453,6 +737,44 @@ public class DeploymentPackage {
         return new FileInputStream(tmp);
     }
 
+    /**
+     * Writes the manifest, the bundle sections first, in order, then the
+     * resource sections.
+     */
+    private void writeManifest(OutputStream out) throws IOException {
+        // defaults, then user defined
+        Attributes main = new Attributes();
+        main.putValue("Manifest-Version", "1.0");
+        main.putValue("Content-Type", "application/vnd.osgi.dp");
+        for (Map.Entry<String, String> entry : entries.entrySet()) {
+            main.putValue(entry.getKey(), entry.getValue());
+        }
+
+        ManifestWriter writer = new ManifestWriter(out);
+        writer.main(main);
+        for (BundleResource br : bundles.values()) {
+            writer.section(br.getName());
+            writer.header(Constants.BUNDLE_SYMBOLICNAME, br.getSymbolicName());
+            writer.header(Constants.SHA_ATTRIBUTE, br.getSHA1().toString());
+            writer.header(Constants.BUNDLE_VERSION, br.getVersion());
+            if (fixPack != null) {
+                writer.header(Constants.DEPLOYMENTPACKAGE_MISSING, Boolean.toString(br.isMissing()));
+            }
+            if (br.isCustomizer()) {
+                writer.header(Constants.DEPLOYMENTPACKAGE_CUSTOMIZER, Boolean.toString(br.isCustomizer()));
+            }
+        }
+
+        for (Resource res : resources.values()) {
+            writer.section(res.getName());
+            writer.header(Constants.SHA_ATTRIBUTE, res.getSHA1().toString());
+            if (res.getProcessor() != null) {
+                writer.header(Constants.RESOURCE_PROCESSOR, res.getProcessor());
+            }
+        }
+        writer.finish();
+    }
+
     private void copy(String nameSection, InputStream inputStream,
             JarOutputStream jarOut) throws IOException {
         ZipEntry zipEntry = new JarEntry(nameSection);
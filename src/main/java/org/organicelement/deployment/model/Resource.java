@@ -43,6 +43,12 @@ public class Resource {
         return this;
     }
 
+    public Resource setFile(File value) throws IOException {
+        handle = Store.STORE.store(value);
+        analyze(value.toURI().toURL());
+        return this;
+    }
+
     private void analyze(URL value) throws IOException {
         String url = value.toExternalForm();
         int index = url.lastIndexOf('/'); //TODO OS Specific
@@ -56,8 +62,14 @@ public class Resource {
     }
 
     public boolean exists() throws IOException {
-        return (handle != null) &&
-            ((new File(Store.STORE.getLocation(handle))).exists());
+        return (handle != null) && Store.STORE.exists(handle);
+    }
+
+    /**
+     * @return the handle of the content, <code>null</code> until set
+     */
+    Handle getHandle() {
+        return handle;
     }
 
     public Object getSHA1() {
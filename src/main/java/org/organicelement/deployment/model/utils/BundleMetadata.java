@@ -0,0 +1,113 @@
+package org.organicelement.deployment.model.utils;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.jar.Attributes;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
+import java.util.zip.ZipException;
+
+import org.organicelement.deployment.model.Constants;
+
+/**
+ * The OSGi metadata of a bundle, read from its manifest only. The manifest
+ * is located through the ZIP central directory, no other entry is read and
+ * signatures are not verified.
+ */
+public final class BundleMetadata {
+
+    private final String symbolicName;
+
+    private final String version;
+
+    private final String exportPackage;
+
+    private final String importPackage;
+
+    BundleMetadata(String symbolicName, String version, String exportPackage, String importPackage) {
+        this.symbolicName = symbolicName;
+        this.version = version;
+        this.exportPackage = exportPackage;
+        this.importPackage = importPackage;
+    }
+
+    private BundleMetadata(Manifest manifest) {
+        Attributes main = manifest == null ? new Attributes() : manifest.getMainAttributes();
+        // Without the directives, e.g. singleton:=true.
+        symbolicName = HeaderParser.getFirstName(main.getValue(Constants.BUNDLE_SYMBOLICNAME));
+        version = main.getValue(Constants.BUNDLE_VERSION);
+        exportPackage = main.getValue(Constants.EXPORT_PACKAGE);
+        importPackage = main.getValue(Constants.IMPORT_PACKAGE);
+    }
+
+    /**
+     * Reads the metadata of a bundle.
+     * @param file the bundle
+     * @return the metadata, with <code>null</code> values if the file has no
+     *         manifest
+     * @throws IOException if the file cannot be read
+     */
+    public static BundleMetadata read(File file) throws IOException {
+        return new BundleMetadata(readManifest(file));
+    }
+
+    /**
+     * Reads the manifest of a jar file.
+     * @param file the jar file
+     * @return the manifest, <code>null</code> if absent
+     * @throws IOException if the file cannot be read
+     */
+    public static Manifest readManifest(File file) throws IOException {
+        byte[] data;
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            ZipDirectory.Entry entry = ZipDirectory.findEntry(raf, JarFile.MANIFEST_NAME);
+            if (entry == null) {
+                return null;
+            }
+            data = ZipDirectory.read(raf, entry);
+        } catch (ZipException e) {
+            // e.g. ZIP64, let the JDK handle it.
+            return readManifestFromJar(file);
+        } finally {
+            raf.close();
+        }
+        return new Manifest(new ByteArrayInputStream(data));
+    }
+
+    private static Manifest readManifestFromJar(File file) throws IOException {
+        JarFile jar = new JarFile(file, false);
+        try {
+            return jar.getManifest();
+        } finally {
+            jar.close();
+        }
+    }
+
+    /**
+     * @return the symbolic name without its directives
+     */
+    public String getSymbolicName() {
+        return symbolicName;
+    }
+
+    public String getVersion() {
+        return version;
+    }
+
+    /**
+     * @return the raw Export-Package header
+     */
+    public String getExportPackage() {
+        return exportPackage;
+    }
+
+    /**
+     * @return the raw Import-Package header
+     */
+    public String getImportPackage() {
+        return importPackage;
+    }
+}
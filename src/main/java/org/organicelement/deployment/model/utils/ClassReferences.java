@@ -0,0 +1,284 @@
+package org.organicelement.deployment.model.utils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Computes the packages referred by the classes of a bundle, from their
+ * constant pool. The class constants, the member and invocation descriptors
+ * and the runtime annotation types are considered; generic signatures, which
+ * are erased at runtime, are not.
+ */
+public final class ClassReferences {
+
+    private static final int CONSTANT_UTF8 = 1;
+    private static final int CONSTANT_INTEGER = 3;
+    private static final int CONSTANT_FLOAT = 4;
+    private static final int CONSTANT_LONG = 5;
+    private static final int CONSTANT_DOUBLE = 6;
+    private static final int CONSTANT_CLASS = 7;
+    private static final int CONSTANT_STRING = 8;
+    private static final int CONSTANT_FIELDREF = 9;
+    private static final int CONSTANT_METHODREF = 10;
+    private static final int CONSTANT_INTERFACE_METHODREF = 11;
+    private static final int CONSTANT_NAME_AND_TYPE = 12;
+    private static final int CONSTANT_METHOD_HANDLE = 15;
+    private static final int CONSTANT_METHOD_TYPE = 16;
+    private static final int CONSTANT_DYNAMIC = 17;
+    private static final int CONSTANT_INVOKE_DYNAMIC = 18;
+    private static final int CONSTANT_MODULE = 19;
+    private static final int CONSTANT_PACKAGE = 20;
+
+    /**
+     * Private constructor to ensure no instances are created.
+     */
+    private ClassReferences() {
+    }
+
+    /**
+     * Analyzes the classes of a bundle, embedded jars excluded.
+     * @param bundle the bundle
+     * @return the referred packages, sorted, except the <code>java.*</code>
+     *         packages and the packages of the bundle
+     * @throws IOException if the bundle or one of its classes cannot be read
+     */
+    public static Set<String> getImportedPackages(File bundle) throws IOException {
+        Set<String> referred = new HashSet<String>();
+        Set<String> contained = new HashSet<String>();
+        ZipFile zip = new ZipFile(bundle);
+        try {
+            byte[] buffer = new byte[8192];
+            Enumeration<? extends ZipEntry> entries = zip.entries();
+            while (entries.hasMoreElements()) {
+                ZipEntry entry = entries.nextElement();
+                String name = entry.getName();
+                if (!name.endsWith(".class") || name.startsWith("META-INF/")) {
+                    continue;
+                }
+                contained.add(getPackage(name, 0, name.lastIndexOf('/') + 1));
+                InputStream is = zip.getInputStream(entry);
+                try {
+                    addReferredPackages(read(is, buffer), referred);
+                } catch (IOException e) {
+                    throw new IOException("Cannot analyze " + name + " : " + e.getMessage());
+                } finally {
+                    is.close();
+                }
+            }
+        } finally {
+            zip.close();
+        }
+
+        Set<String> imported = new TreeSet<String>();
+        for (String pkg : referred) {
+            if (pkg.length() > 0 && !pkg.startsWith("java.") && !contained.contains(pkg)) {
+                imported.add(pkg);
+            }
+        }
+        return imported;
+    }
+
+    /**
+     * Adds the packages referred by a class file to a set.
+     * @param data the class file
+     * @param packages the set receiving the package names
+     * @throws IOException if the class file is invalid
+     */
+    public static void addReferredPackages(byte[] data, Set<String> packages) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+        if (in.readInt() != 0xCAFEBABE) {
+            throw new IOException("Not a class file");
+        }
+        in.readUnsignedShort();
+        in.readUnsignedShort();
+
+        int count = in.readUnsignedShort();
+        String[] utf8 = new String[count];
+        int[] classes = new int[count];
+        int[] descriptors = new int[count];
+        int classCount = 0;
+        int descriptorCount = 0;
+        for (int i = 1; i < count; i++) {
+            int tag = in.readUnsignedByte();
+            switch (tag) {
+                case CONSTANT_UTF8:
+                    utf8[i] = in.readUTF();
+                    break;
+                case CONSTANT_CLASS:
+                    classes[classCount++] = in.readUnsignedShort();
+                    break;
+                case CONSTANT_METHOD_TYPE:
+                    descriptors[descriptorCount++] = in.readUnsignedShort();
+                    break;
+                case CONSTANT_NAME_AND_TYPE:
+                    in.readUnsignedShort();
+                    descriptors[descriptorCount++] = in.readUnsignedShort();
+                    break;
+                case CONSTANT_STRING:
+                case CONSTANT_MODULE:
+                case CONSTANT_PACKAGE:
+                    in.readUnsignedShort();
+                    break;
+                case CONSTANT_METHOD_HANDLE:
+                    in.readUnsignedByte();
+                    in.readUnsignedShort();
+                    break;
+                case CONSTANT_INTEGER:
+                case CONSTANT_FLOAT:
+                case CONSTANT_FIELDREF:
+                case CONSTANT_METHODREF:
+                case CONSTANT_INTERFACE_METHODREF:
+                case CONSTANT_DYNAMIC:
+                case CONSTANT_INVOKE_DYNAMIC:
+                    in.readInt();
+                    break;
+                case CONSTANT_LONG:
+                case CONSTANT_DOUBLE:
+                    in.readLong();
+                    i++;
+                    break;
+                default:
+                    throw new IOException("Invalid constant pool tag " + tag);
+            }
+        }
+
+        for (int i = 0; i < classCount; i++) {
+            String name = utf8[classes[i]];
+            if (name.startsWith("[")) {
+                addDescriptor(name, packages);
+            } else {
+                packages.add(getPackage(name, 0, name.lastIndexOf('/') + 1));
+            }
+        }
+        for (int i = 0; i < descriptorCount; i++) {
+            addDescriptor(utf8[descriptors[i]], packages);
+        }
+
+        in.readUnsignedShort(); // access
+        in.readUnsignedShort(); // this
+        in.readUnsignedShort(); // super
+        skip(in, 2 * in.readUnsignedShort()); // interfaces
+        for (int members = 0; members < 2; members++) {
+            int memberCount = in.readUnsignedShort();
+            for (int i = 0; i < memberCount; i++) {
+                in.readUnsignedShort(); // access
+                in.readUnsignedShort(); // name
+                addDescriptor(utf8[in.readUnsignedShort()], packages);
+                readAttributes(in, utf8, packages);
+            }
+        }
+        readAttributes(in, utf8, packages);
+    }
+
+    private static void readAttributes(DataInputStream in, String[] utf8, Set<String> packages) throws IOException {
+        int count = in.readUnsignedShort();
+        for (int i = 0; i < count; i++) {
+            String name = utf8[in.readUnsignedShort()];
+            int length = in.readInt();
+            if ("RuntimeVisibleAnnotations".equals(name)) {
+                int annotations = in.readUnsignedShort();
+                for (int j = 0; j < annotations; j++) {
+                    readAnnotation(in, utf8, packages);
+                }
+            } else if ("RuntimeVisibleParameterAnnotations".equals(name)) {
+                int parameters = in.readUnsignedByte();
+                for (int p = 0; p < parameters; p++) {
+                    int annotations = in.readUnsignedShort();
+                    for (int j = 0; j < annotations; j++) {
+                        readAnnotation(in, utf8, packages);
+                    }
+                }
+            } else {
+                skip(in, length);
+            }
+        }
+    }
+
+    private static void readAnnotation(DataInputStream in, String[] utf8, Set<String> packages) throws IOException {
+        addDescriptor(utf8[in.readUnsignedShort()], packages);
+        int pairs = in.readUnsignedShort();
+        for (int i = 0; i < pairs; i++) {
+            in.readUnsignedShort(); // name
+            readElementValue(in, utf8, packages);
+        }
+    }
+
+    private static void readElementValue(DataInputStream in, String[] utf8, Set<String> packages)
+            throws IOException {
+        int tag = in.readUnsignedByte();
+        switch (tag) {
+            case 'e':
+                addDescriptor(utf8[in.readUnsignedShort()], packages);
+                in.readUnsignedShort();
+                break;
+            case 'c':
+                addDescriptor(utf8[in.readUnsignedShort()], packages);
+                break;
+            case '@':
+                readAnnotation(in, utf8, packages);
+                break;
+            case '[':
+                int values = in.readUnsignedShort();
+                for (int i = 0; i < values; i++) {
+                    readElementValue(in, utf8, packages);
+                }
+                break;
+            default:
+                in.readUnsignedShort();
+                break;
+        }
+    }
+
+    /**
+     * Adds the packages of the object types of a field or method descriptor.
+     */
+    private static void addDescriptor(String descriptor, Set<String> packages) {
+        int length = descriptor.length();
+        for (int i = 0; i < length; i++) {
+            if (descriptor.charAt(i) == 'L') {
+                int end = descriptor.indexOf(';', i);
+                if (end == -1) {
+                    return;
+                }
+                packages.add(getPackage(descriptor, i + 1, descriptor.lastIndexOf('/', end) + 1));
+                i = end;
+            }
+        }
+    }
+
+    /**
+     * @return the dotted package of an internal name, whose simple name
+     *         starts at <code>end</code>
+     */
+    private static String getPackage(String name, int start, int end) {
+        if (end <= start) {
+            return "";
+        }
+        return name.substring(start, end - 1).replace('/', '.');
+    }
+
+    private static void skip(DataInputStream in, int length) throws IOException {
+        if (in.skipBytes(length) != length) {
+            throw new IOException("Truncated class file");
+        }
+    }
+
+    private static byte[] read(InputStream is, byte[] buffer) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        int read;
+        while ((read = is.read(buffer)) != -1) {
+            bos.write(buffer, 0, read);
+        }
+        return bos.toByteArray();
+    }
+}
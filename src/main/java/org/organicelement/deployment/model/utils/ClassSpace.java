@@ -0,0 +1,190 @@
+package org.organicelement.deployment.model.utils;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipFile;
+
+/**
+ * The packages and classes of a set of bundles, to find the packages split
+ * across bundles and the classes contained by several bundles. Each bundle
+ * is added once, in a single pass over its class entries, and only the first
+ * owner of a package or class is kept until a second one shows up.
+ * <p>
+ * A package is split when several bundles contain or export it. Embedded
+ * jars are not inspected.
+ * </p>
+ */
+public final class ClassSpace {
+
+    private static final String MODULE_INFO = "module-info.class";
+
+    private static final String PACKAGE_INFO = "package-info.class";
+
+    /**
+     * package =&gt; first bundle containing or exporting it.
+     */
+    private final Map<String, String> packages = new HashMap<String, String>();
+
+    /**
+     * class entry =&gt; first bundle containing it.
+     */
+    private final Map<String, String> classes = new HashMap<String, String>();
+
+    private final Map<String, Set<String>> splitPackages = new TreeMap<String, Set<String>>();
+
+    private final Map<String, Set<String>> duplicateClasses = new TreeMap<String, Set<String>>();
+
+    /**
+     * Adds a bundle.
+     * @param bundle the bundle name, reported
+     * @param entries the class entries of the bundle, e.g.
+     *        <code>org/example/Foo.class</code>
+     * @param exportPackage the Export-Package header, may be
+     *        <code>null</code>
+     * @throws IllegalArgumentException if the header is malformed
+     */
+    public void add(String bundle, Collection<String> entries, String exportPackage) {
+        Set<String> contained = new HashSet<String>();
+        for (String entry : entries) {
+            String owner = classes.get(entry);
+            if (owner == null) {
+                classes.put(entry, bundle);
+            } else if (!owner.equals(bundle)) {
+                addOwners(duplicateClasses, entry, owner, bundle);
+            }
+            int slash = entry.lastIndexOf('/');
+            if (slash != -1) {
+                contained.add(entry.substring(0, slash).replace('/', '.'));
+            }
+        }
+        contained.addAll(HeaderParser.parse(exportPackage).keySet());
+
+        for (String pkg : contained) {
+            String owner = packages.get(pkg);
+            if (owner == null) {
+                packages.put(pkg, bundle);
+            } else if (!owner.equals(bundle)) {
+                addOwners(splitPackages, pkg, owner, bundle);
+            }
+        }
+    }
+
+    private static void addOwners(Map<String, Set<String>> map, String key, String first, String other) {
+        Set<String> owners = map.get(key);
+        if (owners == null) {
+            owners = new LinkedHashSet<String>();
+            owners.add(first);
+            map.put(key, owners);
+        }
+        owners.add(other);
+    }
+
+    /**
+     * @return the packages contained or exported by several bundles, sorted,
+     *         with these bundles in the order they were added
+     */
+    public Map<String, Set<String>> getSplitPackages() {
+        return splitPackages;
+    }
+
+    /**
+     * @return the class entries contained by several bundles, sorted, with
+     *         these bundles in the order they were added
+     */
+    public Map<String, Set<String>> getDuplicateClasses() {
+        return duplicateClasses;
+    }
+
+    /**
+     * Lists the class entries of a bundle from its central directory, no
+     * entry is decompressed. The list is cached in the store, per digest.
+     * @param handle the stored bundle
+     * @return the class entries, <code>META-INF</code> and the module and
+     *         package descriptors excluded
+     * @throws IOException if the bundle cannot be read
+     */
+    public static List<String> getClassEntries(Handle handle) throws IOException {
+        String key = "classes:" + handle.getSHA1();
+        Handle cached = Store.STORE.getDerived(key);
+        List<String> entries = new ArrayList<String>();
+        if (cached != null) {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(Store.STORE.load(cached), "UTF-8"));
+            try {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (line.length() > 0) {
+                        entries.add(line);
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+            return entries;
+        }
+
+        entries = getClassEntries(Store.STORE.getFile(handle));
+        StringBuilder sb = new StringBuilder();
+        for (String entry : entries) {
+            sb.append(entry).append('\n');
+        }
+        Store.STORE.putDerived(key, Store.STORE.store(new ByteArrayInputStream(sb.toString().getBytes("UTF-8"))));
+        return entries;
+    }
+
+    /**
+     * Lists the class entries of a bundle from its central directory.
+     * @param file the bundle
+     * @return the class entries, <code>META-INF</code> excluded
+     * @throws IOException if the bundle cannot be read
+     */
+    public static List<String> getClassEntries(File file) throws IOException {
+        List<String> entries = new ArrayList<String>();
+        try {
+            for (ZipDirectory.Entry entry : ZipDirectory.read(file).getEntries()) {
+                addClassEntry(entries, entry.getName());
+            }
+        } catch (ZipException e) {
+            // e.g. ZIP64, let the JDK handle it.
+            entries.clear();
+            ZipFile zip = new ZipFile(file);
+            try {
+                Enumeration<? extends ZipEntry> all = zip.entries();
+                while (all.hasMoreElements()) {
+                    addClassEntry(entries, all.nextElement().getName());
+                }
+            } finally {
+                zip.close();
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Adds the entry if it is a class. Module and package descriptors are
+     * not classes that can clash, every modular bundle has its own
+     * <code>module-info.class</code>.
+     */
+    private static void addClassEntry(List<String> entries, String name) {
+        if (name.endsWith(".class") && !name.startsWith("META-INF/")) {
+            String simpleName = name.substring(name.lastIndexOf('/') + 1);
+            if (!simpleName.equals(MODULE_INFO) && !simpleName.equals(PACKAGE_INFO)) {
+                entries.add(name);
+            }
+        }
+    }
+}
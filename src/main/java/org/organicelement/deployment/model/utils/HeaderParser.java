@@ -0,0 +1,231 @@
+package org.organicelement.deployment.model.utils;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Standard OSGi header parser and printer. The format is
+ * <pre>
+ * clauses ::= clause ( ',' clause ) *
+ * clause ::= name ( ';' name ) * ( ';' key '=' value ) *
+ * </pre>
+ * The header is scanned once, by index. Only the names, keys and values are
+ * extracted as strings, no intermediate buffer is built. Clauses keep their
+ * order, and so do the attributes of a clause.
+ */
+public final class HeaderParser {
+
+    /**
+     * Private constructor to ensure no instances are created.
+     */
+    private HeaderParser() {
+    }
+
+    /**
+     * Parses a header into a map { name =&gt; map { attribute|directive =&gt;
+     * value } }, in clause order. Directive keys end with <code>:</code>, the
+     * names of a clause share its attribute map. Quotes around values are
+     * removed.
+     * @param value the header, may be <code>null</code>
+     * @return the parsed clauses, empty for a <code>null</code> header
+     * @throws IllegalArgumentException if a name follows an attribute in a
+     *         clause
+     */
+    public static Map<String, Map<String, String>> parse(String value) {
+        Map<String, Map<String, String>> result = new LinkedHashMap<String, Map<String, String>>();
+        if (value == null) {
+            return result;
+        }
+        int length = value.length();
+        int i = 0;
+        while (i < length) {
+            Map<String, String> clause = new LinkedHashMap<String, String>();
+            boolean hadAttribute = false;
+            char separator = ';';
+            while (separator == ';') {
+                // Name or key.
+                int start = skipWhitespace(value, i);
+                int end = start;
+                while (end < length && !isSeparator(value.charAt(end)) && value.charAt(end) != '=') {
+                    end++;
+                }
+                String token = value.substring(start, trimEnd(value, start, end));
+                separator = end < length ? value.charAt(end) : 0;
+                i = end + 1;
+
+                if (separator == '=') {
+                    start = skipWhitespace(value, i);
+                    String attribute;
+                    if (start < length && (value.charAt(start) == '"' || value.charAt(start) == '\'')) {
+                        char quote = value.charAt(start);
+                        end = start + 1;
+                        while (end < length && value.charAt(end) != quote) {
+                            if (value.charAt(end) == '\\' && end + 1 < length) {
+                                end++;
+                            }
+                            end++;
+                        }
+                        attribute = unescape(value, start + 1, end, quote);
+                        end = Math.min(end + 1, length);
+                        while (end < length && !isSeparator(value.charAt(end))) {
+                            end++;
+                        }
+                    } else {
+                        end = start;
+                        while (end < length && !isSeparator(value.charAt(end))) {
+                            end++;
+                        }
+                        attribute = value.substring(start, trimEnd(value, start, end));
+                    }
+                    clause.put(token, attribute);
+                    hadAttribute = true;
+                    separator = end < length ? value.charAt(end) : 0;
+                    i = end + 1;
+                } else if (token.length() > 0) {
+                    if (hadAttribute) {
+                        throw new IllegalArgumentException("Header contains name field after attribute or directive: "
+                                + token + " from " + value);
+                    }
+                    result.put(token, clause);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @param value a header, may be <code>null</code>
+     * @return the first name of the first clause, e.g. the symbolic name of
+     *         a <code>Bundle-SymbolicName</code> header, <code>null</code> if
+     *         the header is <code>null</code>
+     */
+    public static String getFirstName(String value) {
+        if (value == null) {
+            return null;
+        }
+        int start = skipWhitespace(value, 0);
+        int end = start;
+        while (end < value.length() && !isSeparator(value.charAt(end))) {
+            end++;
+        }
+        return value.substring(start, trimEnd(value, start, end));
+    }
+
+    /**
+     * Splits a header on a separator, ignoring the separators within quotes.
+     * Quotes follow the rules of {@link #parse(String)}: a value starting
+     * with <code>"</code> or <code>'</code> is quoted up to the same quote,
+     * backslashes escaping the next character. The parts are neither trimmed
+     * nor unquoted.
+     * @param value the header
+     * @param separator the separator, e.g. <code>,</code> for the clauses
+     * @return the parts
+     */
+    public static List<String> split(String value, char separator) {
+        List<String> parts = new ArrayList<String>();
+        // Within a name or key, before the first character of a value, or within a value.
+        boolean valueStart = false;
+        boolean inValue = false;
+        char quote = 0;
+        int start = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (quote != 0) {
+                if (c == '\\') {
+                    i++;
+                } else if (c == quote) {
+                    quote = 0;
+                }
+            } else if (isSeparator(c)) {
+                if (c == separator) {
+                    parts.add(value.substring(start, i));
+                    start = i + 1;
+                }
+                valueStart = false;
+                inValue = false;
+            } else if (valueStart) {
+                if (c == '"' || c == '\'') {
+                    quote = c;
+                    valueStart = false;
+                    inValue = true;
+                } else if (!Character.isWhitespace(c)) {
+                    valueStart = false;
+                    inValue = true;
+                }
+            } else if (!inValue && c == '=') {
+                valueStart = true;
+            }
+        }
+        parts.add(value.substring(start));
+        return parts;
+    }
+
+    /**
+     * Prints parsed clauses, one clause per name, in iteration order.
+     * @param clauses map { name =&gt; map { attribute|directive =&gt; value } }
+     * @param allowedDirectives the directives to print, the others are
+     *        skipped
+     * @return the header
+     */
+    public static String print(Map<String, Map<String, String>> clauses, String allowedDirectives) {
+        StringBuilder sb = new StringBuilder(clauses.size() * 32);
+        for (Map.Entry<String, Map<String, String>> entry : clauses.entrySet()) {
+            if (sb.length() > 0) {
+                sb.append(", ");
+            }
+            sb.append(entry.getKey());
+            for (Map.Entry<String, String> attribute : entry.getValue().entrySet()) {
+                String key = attribute.getKey();
+                // Skip directives we do not recognize
+                if (key.endsWith(":") && allowedDirectives.indexOf(key) < 0) {
+                    continue;
+                }
+                String value = attribute.getValue();
+                sb.append(';').append(key).append('=');
+                if (value.indexOf(',') >= 0 || value.indexOf(';') >= 0) {
+                    sb.append('"').append(value).append('"');
+                } else {
+                    sb.append(value);
+                }
+            }
+        }
+        return sb.toString();
+    }
+
+    private static boolean isSeparator(char c) {
+        return c == ';' || c == ',';
+    }
+
+    private static int skipWhitespace(String value, int index) {
+        while (index < value.length() && Character.isWhitespace(value.charAt(index))) {
+            index++;
+        }
+        return index;
+    }
+
+    private static int trimEnd(String value, int start, int end) {
+        while (end > start && Character.isWhitespace(value.charAt(end - 1))) {
+            end--;
+        }
+        return end;
+    }
+
+    private static String unescape(String value, int start, int end, char quote) {
+        StringBuilder sb = null;
+        for (int i = start; i < end; i++) {
+            char c = value.charAt(i);
+            if (c == '\\' && i + 1 < end && value.charAt(i + 1) == quote) {
+                if (sb == null) {
+                    sb = new StringBuilder(end - start).append(value, start, i);
+                }
+                c = value.charAt(++i);
+            }
+            if (sb != null) {
+                sb.append(c);
+            }
+        }
+        return sb == null ? value.substring(start, end) : sb.toString();
+    }
+}
@@ -0,0 +1,199 @@
+package org.organicelement.deployment.model.utils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Map;
+import java.util.jar.Attributes;
+
+/**
+ * Writes a manifest header by header, straight to a stream, without building
+ * a {@link java.util.jar.Manifest} first. Values are encoded in UTF-8 into a
+ * reused buffer and wrapped so that no line is longer than 72 bytes, CRLF
+ * included: 70 bytes of content, continuation lines starting with a space.
+ * This is the output of Java 8 {@link java.util.jar.Manifest#write}, Java 11
+ * and later write up to 72 bytes of content per line. Unlike the JDK, a line
+ * is never broken inside a multi-byte character.
+ * <p>
+ * Headers go to the main section until the first {@link #section(String)},
+ * {@link #finish()} ends the last section and flushes the buffer. The stream
+ * is never closed.
+ * </p>
+ */
+public final class ManifestWriter {
+
+    /**
+     * The maximum line length, CRLF excluded: 72 bytes with it.
+     */
+    private static final int LINE_LENGTH = 70;
+
+    private final OutputStream out;
+
+    private final byte[] buffer = new byte[8192];
+
+    private int count;
+
+    /**
+     * @param out the stream receiving the manifest
+     */
+    public ManifestWriter(OutputStream out) {
+        this.out = out;
+    }
+
+    /**
+     * Writes a whole manifest, the sections in their iteration order.
+     * @param main the main attributes
+     * @param sections the name sections
+     * @param out the stream receiving the manifest
+     * @throws IOException if the manifest cannot be written
+     */
+    public static void write(Attributes main, Map<String, Attributes> sections, OutputStream out)
+            throws IOException {
+        ManifestWriter writer = new ManifestWriter(out);
+        writer.main(main);
+        for (Map.Entry<String, Attributes> section : sections.entrySet()) {
+            writer.section(section.getKey());
+            writer.attributes(section.getValue());
+        }
+        writer.finish();
+    }
+
+    /**
+     * Writes the main attributes, the manifest version first. As the JDK,
+     * nothing is written without a <code>Manifest-Version</code> or a
+     * <code>Signature-Version</code>.
+     * @param main the main attributes
+     * @throws IOException if the attributes cannot be written
+     */
+    public void main(Attributes main) throws IOException {
+        String versionName = Attributes.Name.MANIFEST_VERSION.toString();
+        String version = main.getValue(versionName);
+        if (version == null) {
+            versionName = Attributes.Name.SIGNATURE_VERSION.toString();
+            version = main.getValue(versionName);
+            if (version == null) {
+                return;
+            }
+        }
+        header(versionName, version);
+        for (Map.Entry<Object, Object> entry : main.entrySet()) {
+            String name = entry.getKey().toString();
+            if (!name.equalsIgnoreCase(versionName)) {
+                header(name, (String) entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * Writes attributes in their iteration order.
+     * @param attributes the attributes
+     * @throws IOException if the attributes cannot be written
+     */
+    public void attributes(Attributes attributes) throws IOException {
+        for (Map.Entry<Object, Object> entry : attributes.entrySet()) {
+            header(entry.getKey().toString(), (String) entry.getValue());
+        }
+    }
+
+    /**
+     * Ends the current section and starts a name section.
+     * @param name the section name
+     * @throws IOException if the section cannot be written
+     */
+    public void section(String name) throws IOException {
+        newLine();
+        header("Name", name);
+    }
+
+    /**
+     * Writes a header in the current section.
+     * @param name the header name, ASCII
+     * @param value the header value
+     * @throws IOException if the header cannot be written
+     */
+    public void header(String name, String value) throws IOException {
+        for (int i = 0; i < name.length(); i++) {
+            ensure(1);
+            buffer[count++] = (byte) name.charAt(i);
+        }
+        ensure(2);
+        buffer[count++] = ':';
+        buffer[count++] = ' ';
+        int column = name.length() + 2;
+
+        int length = value.length();
+        for (int i = 0; i < length; i++) {
+            int c = value.charAt(i);
+            int size;
+            if (c < 0x80) {
+                size = 1;
+            } else if (c < 0x800) {
+                size = 2;
+            } else if (Character.isHighSurrogate((char) c) && i + 1 < length
+                    && Character.isLowSurrogate(value.charAt(i + 1))) {
+                c = Character.toCodePoint((char) c, value.charAt(++i));
+                size = 4;
+            } else if (c >= Character.MIN_SURROGATE && c <= Character.MAX_SURROGATE) {
+                // Unpaired surrogate, replaced as String.getBytes does.
+                c = '?';
+                size = 1;
+            } else {
+                size = 3;
+            }
+
+            if (column + size > LINE_LENGTH) {
+                ensure(3);
+                buffer[count++] = '\r';
+                buffer[count++] = '\n';
+                buffer[count++] = ' ';
+                column = 1;
+            }
+            ensure(size);
+            switch (size) {
+                case 1:
+                    buffer[count++] = (byte) c;
+                    break;
+                case 2:
+                    buffer[count++] = (byte) (0xc0 | (c >> 6));
+                    buffer[count++] = (byte) (0x80 | (c & 0x3f));
+                    break;
+                case 3:
+                    buffer[count++] = (byte) (0xe0 | (c >> 12));
+                    buffer[count++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+                    buffer[count++] = (byte) (0x80 | (c & 0x3f));
+                    break;
+                default:
+                    buffer[count++] = (byte) (0xf0 | (c >> 18));
+                    buffer[count++] = (byte) (0x80 | ((c >> 12) & 0x3f));
+                    buffer[count++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+                    buffer[count++] = (byte) (0x80 | (c & 0x3f));
+                    break;
+            }
+            column += size;
+        }
+        newLine();
+    }
+
+    /**
+     * Ends the last section and flushes the manifest to the stream.
+     * @throws IOException if the manifest cannot be written
+     */
+    public void finish() throws IOException {
+        newLine();
+        out.write(buffer, 0, count);
+        count = 0;
+        out.flush();
+    }
+
+    private void newLine() throws IOException {
+        ensure(2);
+        buffer[count++] = '\r';
+        buffer[count++] = '\n';
+    }
+
+    private void ensure(int size) throws IOException {
+        if (count + size > buffer.length) {
+            out.write(buffer, 0, count);
+            count = 0;
+        }
+    }
+}
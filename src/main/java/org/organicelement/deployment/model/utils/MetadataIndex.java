@@ -0,0 +1,173 @@
+package org.organicelement.deployment.model.utils;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Bundle metadata keyed on the SHA-1 digest of the bundle. The metadata is
+ * a pure function of the content, so a bundle is only analyzed the first
+ * time its content is seen.
+ * <p>
+ * The index is an append-only file of tab separated lines, loaded in memory
+ * on creation.
+ * </p>
+ */
+public final class MetadataIndex {
+
+    /**
+     * Encodes a <code>null</code> value.
+     */
+    private static final String NULL = "\\N";
+
+    private final File file;
+
+    private final Map<String, BundleMetadata> entries = new ConcurrentHashMap<String, BundleMetadata>();
+
+    /**
+     * @param file the index file
+     */
+    public MetadataIndex(File file) {
+        this.file = file;
+        load();
+    }
+
+    /**
+     * Gets the metadata of a bundle, analyzing it if its digest is not
+     * indexed yet.
+     * @param sha1 the digest of the bundle
+     * @param bundle the bundle file
+     * @return the metadata
+     * @throws IOException if the bundle cannot be read
+     */
+    public BundleMetadata get(String sha1, File bundle) throws IOException {
+        BundleMetadata metadata = entries.get(sha1);
+        if (metadata == null) {
+            metadata = BundleMetadata.read(bundle);
+            if (entries.put(sha1, metadata) == null) {
+                append(sha1, metadata);
+            }
+        }
+        return metadata;
+    }
+
+    /**
+     * @param sha1 the digest of a bundle
+     * @return <code>true</code> if the bundle metadata is indexed
+     */
+    public boolean contains(String sha1) {
+        return entries.containsKey(sha1);
+    }
+
+    private void load() {
+        if (!file.isFile()) {
+            return;
+        }
+        try {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+            try {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    String[] fields = line.split("\t", -1);
+                    if (fields.length != 5) {
+                        // Skip corrupted line.
+                        continue;
+                    }
+                    entries.put(fields[0], new BundleMetadata(decode(fields[1]), decode(fields[2]),
+                            decode(fields[3]), decode(fields[4])));
+                }
+            } finally {
+                reader.close();
+            }
+        } catch (IOException e) {
+            // The index is only a cache.
+            entries.clear();
+            file.delete();
+        }
+    }
+
+    private synchronized void append(String sha1, BundleMetadata metadata) {
+        try {
+            Writer writer = new OutputStreamWriter(new FileOutputStream(file, true), "UTF-8");
+            try {
+                writer.write(sha1 + "\t" + encode(metadata.getSymbolicName()) + "\t" + encode(metadata.getVersion())
+                        + "\t" + encode(metadata.getExportPackage()) + "\t" + encode(metadata.getImportPackage())
+                        + "\n");
+            } finally {
+                writer.close();
+            }
+        } catch (IOException e) {
+            // The index is only a cache.
+        }
+    }
+
+    private static String encode(String value) {
+        if (value == null) {
+            return NULL;
+        }
+        if (value.indexOf('\\') == -1 && value.indexOf('\t') == -1 && value.indexOf('\n') == -1
+                && value.indexOf('\r') == -1) {
+            return value;
+        }
+        StringBuilder sb = new StringBuilder(value.length() + 8);
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '\\':
+                    sb.append("\\\\");
+                    break;
+                case '\t':
+                    sb.append("\\t");
+                    break;
+                case '\n':
+                    sb.append("\\n");
+                    break;
+                case '\r':
+                    sb.append("\\r");
+                    break;
+                default:
+                    sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    private static String decode(String value) {
+        if (NULL.equals(value)) {
+            return null;
+        }
+        if (value.indexOf('\\') == -1) {
+            return value;
+        }
+        StringBuilder sb = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '\\' && i + 1 < value.length()) {
+                char next = value.charAt(++i);
+                switch (next) {
+                    case 't':
+                        sb.append('\t');
+                        break;
+                    case 'n':
+                        sb.append('\n');
+                        break;
+                    case 'r':
+                        sb.append('\r');
+                        break;
+                    default:
+                        sb.append(next);
+                }
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+}
@@ -1,160 +1,144 @@
 package org.organicelement.deployment.model.utils;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.lang.reflect.Field;
-import java.util.AbstractSet;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Iterator;
-import java.util.List;
+import java.util.LinkedHashMap;
 import java.util.Map;
-import java.util.Set;
 import java.util.jar.Attributes;
 import java.util.jar.Manifest;
 
+/**
+ * A manifest keeping its name sections in insertion order, as required by
+ * the deployment package format for the bundles and resources. Sections are
+ * held in a {@link LinkedHashMap}, reading and writing are linear in the
+ * number of sections. The output is written in section order by
+ * {@link ManifestWriter}, with lines of at most 72 bytes, CRLF included.
+ */
 public class OrderedManifest extends Manifest {
 
-    private Manifest manifest;
+    private final Map<String, Attributes> entries = new LinkedHashMap<String, Attributes>();
 
     public OrderedManifest() {
         super();
-        manifest = new Manifest();
-        // HACK
-        Field[] fields = manifest.getClass().getDeclaredFields();
-        for (Field f : fields) {
-            if (f.getName().equals("entries")) {
-                // Found !
-                try {
-                    f.setAccessible(true);
-                    f.set(manifest, new OrderedMap<String, Attributes>());
-                } catch (Exception e) {
-                    throw new RuntimeException(
-                            "Cannot created the ordered manifest : " + e.getMessage());
-                }
-            }
+    }
+
+    /**
+     * Creates an ordered copy of a manifest.
+     * @param manifest the manifest to copy
+     */
+    public OrderedManifest(Manifest manifest) {
+        super();
+        getMainAttributes().putAll(manifest.getMainAttributes());
+        for (Map.Entry<String, Attributes> entry : manifest.getEntries().entrySet()) {
+            entries.put(entry.getKey(), (Attributes) entry.getValue().clone());
         }
     }
 
     @Override
     public void clear() {
-        manifest.clear();
+        super.clear();
+        entries.clear();
     }
 
     @Override
     public Object clone() {
-        return manifest.clone();
+        return new OrderedManifest(this);
     }
 
     @Override
     public boolean equals(Object o) {
-       return manifest.equals(o);
+        if (!(o instanceof Manifest)) {
+            return false;
+        }
+        Manifest m = (Manifest) o;
+        return getMainAttributes().equals(m.getMainAttributes()) && entries.equals(m.getEntries());
     }
 
     @Override
     public Attributes getAttributes(String name) {
-        return manifest.getAttributes(name);
+        return entries.get(name);
     }
 
     @Override
     public Map<String, Attributes> getEntries() {
-        return manifest.getEntries();
-    }
-
-    @Override
-    public Attributes getMainAttributes() {
-        return manifest.getMainAttributes();
+        return entries;
     }
 
     @Override
     public int hashCode() {
-        return manifest.hashCode();
+        return getMainAttributes().hashCode() + entries.hashCode();
     }
 
     @Override
     public void read(InputStream is) throws IOException {
-        manifest.read(is);
-    }
-
-    @Override
-    public void write(OutputStream out) throws IOException {
-        manifest.write(out);
-    }
-
-    class OrderedMap<String, Attributes> extends HashMap<String, Attributes> {
-
-        private static final long serialVersionUID = 3725974338131428785L;
-
-        List<String> sections = new ArrayList<String>();
-
-        @Override
-        public Set<String> keySet() {
-            // Should follow the same order.
-            Set<String> set = new HashSet<String>(sections);
-            return set;
-        }
-
-        @Override
-        public Set<Entry<String, Attributes>> entrySet() {
-
-            Set<Entry<String, Attributes>> set = new AbstractSet<Entry<String, Attributes>>() {
-
-                @Override
-                public Iterator<Entry<String, Attributes>> iterator() {
-                    return new Iterator<Entry<String, Attributes>>() {
-
-                        Iterator<String> sectionIterator = sections.iterator();
-
-                        public boolean hasNext() {
-                            return sectionIterator.hasNext();
-                        }
-
-                        public Entry<String, Attributes> next() {
-                            final String section = sectionIterator.next();
-                            for(Entry<String, Attributes> entry : OrderedMap.this.getMyEntrySet()) {
-                                if (entry.getKey().equals(section)) {
-                                    return entry;
-                                }
-                            }
-                            // Should not happen...
-                            return null;
-                        }
-
-                        public void remove() {
-                            throw new UnsupportedOperationException();
-                        }
-
-                    };
+        ByteArrayOutputStream line = new ByteArrayOutputStream(128);
+        Attributes current = getMainAttributes();
+        boolean main = true;
+        boolean empty = true;
+        int previous = -1;
+        int c = is.read();
+        while (true) {
+            boolean end = c == -1 || c == '\r' || c == '\n';
+            if (!end) {
+                line.write(c);
+                previous = c;
+                c = is.read();
+                continue;
+            }
+            if (c == '\r') {
+                c = is.read();
+                if (c == '\n') {
+                    c = is.read();
                 }
+            } else if (c == '\n') {
+                c = is.read();
+            }
+            if (c == ' ' && previous != -1) {
+                // Continuation line.
+                c = is.read();
+                continue;
+            }
 
-                @Override
-                public int size() {
-                    return sections.size();
+            if (line.size() == 0) {
+                if (!empty) {
+                    main = false;
+                    current = null;
+                    empty = true;
                 }
-
-            };
-
-            return set;
-
-
-        }
-
-        protected Set<Entry<String, Attributes>> getMyEntrySet() {
-           return super.entrySet();
-        }
-
-        @Override
-        public Attributes put(String key, Attributes value) {
-            if (!sections.contains(key)) {
-                sections.add(key); // Add in queue.
+            } else {
+                String header = new String(line.toByteArray(), "UTF-8");
+                int colon = header.indexOf(": ");
+                if (colon <= 0) {
+                    throw new IOException("invalid header field : " + header);
+                }
+                String name = header.substring(0, colon);
+                String value = header.substring(colon + 2);
+                if (current == null) {
+                    if (main || !name.equalsIgnoreCase("Name")) {
+                        throw new IOException("invalid manifest section, no name : " + header);
+                    }
+                    current = entries.get(value);
+                    if (current == null) {
+                        current = new Attributes();
+                        entries.put(value, current);
+                    }
+                } else {
+                    current.putValue(name, value);
+                }
+                empty = false;
+                line.reset();
+            }
+            previous = -1;
+            if (c == -1) {
+                return;
             }
-            return super.put(key, value);
         }
-
     }
 
-
-
+    @Override
+    public void write(OutputStream out) throws IOException {
+        ManifestWriter.write(getMainAttributes(), entries, out);
+    }
 }
@@ -0,0 +1,203 @@
+package org.organicelement.deployment.model.utils;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The exported packages of a set of bundles, keyed on the package name, used
+ * to check that the imports of bundles resolve. Each import costs one lookup
+ * and a version comparison per exporter of the package, so checking a bundle
+ * is linear in the number of its imports.
+ * <p>
+ * Only the package names and versions are considered, the other matching
+ * attributes and the <code>uses</code> constraints are not.
+ * </p>
+ */
+public final class PackageIndex {
+
+    private static final String VERSION = "version";
+
+    private static final String SPECIFICATION_VERSION = "specification-version";
+
+    private static final String RESOLUTION = "resolution:";
+
+    private static final String OPTIONAL = "optional";
+
+    /**
+     * package =&gt; exports, in insertion order.
+     */
+    private final Map<String, List<Export>> exports = new HashMap<String, List<Export>>();
+
+    public PackageIndex() {
+    }
+
+    /**
+     * @param index the index to copy, may be <code>null</code>
+     */
+    public PackageIndex(PackageIndex index) {
+        if (index != null) {
+            synchronized (index) {
+                for (Map.Entry<String, List<Export>> entry : index.exports.entrySet()) {
+                    exports.put(entry.getKey(), new ArrayList<Export>(entry.getValue()));
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds the exports of a bundle.
+     * @param metadata the bundle metadata
+     * @throws IllegalArgumentException if the header is malformed
+     */
+    public void addExports(BundleMetadata metadata) {
+        addExports(metadata.getSymbolicName(), metadata.getExportPackage());
+    }
+
+    /**
+     * Adds exports.
+     * @param exporter the exporter, reported when an import does not match
+     * @param header an Export-Package header, may be <code>null</code>
+     * @throws IllegalArgumentException if the header is malformed
+     */
+    public synchronized void addExports(String exporter, String header) {
+        for (Map.Entry<String, Map<String, String>> clause : HeaderParser.parse(header).entrySet()) {
+            Map<String, String> attributes = clause.getValue();
+            String version = attributes.get(VERSION);
+            if (version == null) {
+                version = attributes.get(SPECIFICATION_VERSION);
+            }
+            List<Export> list = exports.get(clause.getKey());
+            if (list == null) {
+                list = new ArrayList<Export>(1);
+                exports.put(clause.getKey(), list);
+            }
+            list.add(new Export(exporter, version == null ? "0.0.0" : version.trim()));
+        }
+    }
+
+    /**
+     * @param pkg a package name
+     * @return <code>true</code> if at least one bundle exports the package
+     */
+    public synchronized boolean exports(String pkg) {
+        return exports.containsKey(pkg);
+    }
+
+    /**
+     * Checks the mandatory imports of a bundle. The <code>java.*</code>
+     * packages are provided by the runtime and always resolve.
+     * @param importer the importing bundle, reported in the messages
+     * @param header an Import-Package header, may be <code>null</code>
+     * @return one message per unresolved import, empty if all resolve
+     */
+    public synchronized List<String> getUnresolved(String importer, String header) {
+        List<String> unresolved = new ArrayList<String>();
+        Map<String, Map<String, String>> clauses;
+        try {
+            clauses = HeaderParser.parse(header);
+        } catch (IllegalArgumentException e) {
+            unresolved.add(importer + " : invalid Import-Package header, " + e.getMessage());
+            return unresolved;
+        }
+        for (Map.Entry<String, Map<String, String>> clause : clauses.entrySet()) {
+            String pkg = clause.getKey();
+            Map<String, String> attributes = clause.getValue();
+            if (pkg.startsWith("java.") || OPTIONAL.equals(attributes.get(RESOLUTION))) {
+                continue;
+            }
+            String range = attributes.get(VERSION);
+            if (range == null) {
+                range = attributes.get(SPECIFICATION_VERSION);
+            }
+            String message = check(pkg, range == null ? null : range.trim());
+            if (message != null) {
+                unresolved.add(importer + " : " + message);
+            }
+        }
+        return unresolved;
+    }
+
+    /**
+     * @return <code>null</code> if the import resolves, the reason otherwise
+     */
+    private String check(String pkg, String range) {
+        String clause = range == null ? pkg : pkg + ";version=\"" + range + "\"";
+        Version floor = Version.ZERO;
+        Version ceiling = null;
+        boolean floorIncluded = true;
+        boolean ceilingIncluded = false;
+        if (range != null) {
+            char first = range.length() == 0 ? 0 : range.charAt(0);
+            if (first == '[' || first == '(') {
+                int comma = range.indexOf(',');
+                char last = range.charAt(range.length() - 1);
+                if (comma == -1 || (last != ']' && last != ')')) {
+                    return clause + ", invalid version range";
+                }
+                floor = Version.parse(range.substring(1, comma).trim());
+                ceiling = Version.parse(range.substring(comma + 1, range.length() - 1).trim());
+                floorIncluded = first == '[';
+                ceilingIncluded = last == ']';
+                if (ceiling == null) {
+                    return clause + ", invalid version range";
+                }
+            } else {
+                floor = Version.parse(range);
+            }
+            if (floor == null) {
+                return clause + ", invalid version range";
+            }
+        }
+
+        List<Export> list = exports.get(pkg);
+        if (list == null) {
+            return clause + ", not exported";
+        }
+        StringBuilder found = new StringBuilder();
+        for (Export export : list) {
+            Version version = export.getVersion();
+            if (version != null) {
+                int low = version.compareTo(floor);
+                int high = ceiling == null ? -1 : version.compareTo(ceiling);
+                if ((low > 0 || (low == 0 && floorIncluded)) && (high < 0 || (high == 0 && ceilingIncluded))) {
+                    return null;
+                }
+            }
+            found.append(found.length() == 0 ? "" : ", ").append(export.exporter).append(' ')
+                    .append(export.version);
+        }
+        return clause + ", exported by " + found + " only";
+    }
+
+    /**
+     * An exported package version, parsed on first use.
+     */
+    private static final class Export {
+
+        private final String exporter;
+
+        private final String version;
+
+        private Version parsed;
+
+        private boolean invalid;
+
+        Export(String exporter, String version) {
+            this.exporter = exporter;
+            this.version = version;
+        }
+
+        /**
+         * @return the version, <code>null</code> if it is not valid
+         */
+        Version getVersion() {
+            if (parsed == null && !invalid) {
+                parsed = Version.parse(version);
+                invalid = parsed == null;
+            }
+            return parsed;
+        }
+    }
+}
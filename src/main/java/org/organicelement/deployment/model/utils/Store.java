@@ -1,15 +1,23 @@
 package org.organicelement.deployment.model.utils;
 
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UnsupportedEncodingException;
+import java.io.Writer;
 import java.net.URI;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class Store {
 
@@ -17,42 +25,327 @@ public class Store {
 
     private File dir;
 
+    /**
+     * Files already ingested, keyed on their path, size and modification
+     * time, and derived content, keyed on its derivation. The index is
+     * persisted so unchanged files are not read nor derived again by later
+     * builds.
+     */
+    private final Map<String, Handle> ingested = new ConcurrentHashMap<String, Handle>();
+
+    /**
+     * The digests whose content was written or found in the store by this
+     * build, so checking that they exist needs no file system access.
+     */
+    private final Map<String, Boolean> present = new ConcurrentHashMap<String, Boolean>();
+
+    private final MetadataIndex metadata;
+
     private Store() {
         dir = new File((new StringBuilder()).append(
                 System.getProperty("java.io.tmpdir")).append("/dp").toString());
         dir.mkdirs();
 
+        loadIndex();
+        metadata = new MetadataIndex(new File(dir, "metadata.idx"));
+    }
+
+    /**
+     * Loads the persisted ingest index. The index is an append-only file of
+     * <code>key TAB sha1</code> lines, compacted when stale lines dominate.
+     */
+    private void loadIndex() {
+        File index = getIndex();
+        if (!index.isFile()) {
+            return;
+        }
+        int lines = 0;
+        try {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(index), "UTF-8"));
+            try {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    int sep = line.lastIndexOf('\t');
+                    if (sep > 0) {
+                        ingested.put(line.substring(0, sep), handle(line.substring(sep + 1)));
+                        lines++;
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        } catch (IOException e) {
+            // The index is only a cache.
+            ingested.clear();
+            index.delete();
+            return;
+        }
+
+        if (lines > 2 * ingested.size() + 100) {
+            writeIndex();
+        }
+    }
+
+    private synchronized void writeIndex() {
+        File index = getIndex();
+        try {
+            File partial = File.createTempFile("index_", ".part", dir);
+            Writer writer = new OutputStreamWriter(new FileOutputStream(partial), "UTF-8");
+            try {
+                for (Map.Entry<String, Handle> entry : ingested.entrySet()) {
+                    writer.write(entry.getKey() + "\t" + entry.getValue().getSHA1() + "\n");
+                }
+            } finally {
+                writer.close();
+            }
+            if (!partial.renameTo(index)) {
+                partial.delete();
+            }
+        } catch (IOException e) {
+            // The index is only a cache.
+        }
+    }
+
+    private synchronized void appendIndex(String key, Handle handle) {
+        try {
+            Writer writer = new OutputStreamWriter(new FileOutputStream(getIndex(), true), "UTF-8");
+            try {
+                writer.write(key + "\t" + handle.getSHA1() + "\n");
+            } finally {
+                writer.close();
+            }
+        } catch (IOException e) {
+            // The index is only a cache.
+        }
+    }
+
+    private File getIndex() {
+        return new File(dir, "ingested.idx");
     }
 
     public Handle store(InputStream is) throws IOException {
+        Output out = create();
+        try {
+            StreamUtils.copyStream(is, out, false);
+            return out.commit();
+        } finally {
+            out.close();
+        }
+    }
 
-        final File intermediate = File.createTempFile("dp_", ".tmp");
+    /**
+     * Opens a stream storing the written content. The digest is computed on
+     * the fly, the content is written once, directly in the store.
+     * @return the stream, to be committed then closed
+     * @throws IOException if the stream cannot be created
+     */
+    public Output create() throws IOException {
+        return new Output();
+    }
 
-        FileOutputStream fis = null;
-        final String h;
+    /**
+     * A stream writing content into the store. Closing an uncommitted stream
+     * discards its content.
+     */
+    public final class Output extends OutputStream {
 
-        fis = new FileOutputStream(intermediate);
-        h = hash(is, fis);
+        private final File partial;
 
-        fis.close();
-        //if (!getLocation(h).exists()) {
-            StreamUtils.copyStream(new FileInputStream(intermediate),
-                    new FileOutputStream(getLocation(h)), true);
-        //}
+        private final OutputStream out;
 
-        intermediate.delete();
+        private final MessageDigest md;
 
-        Handle handle = new Handle() {
+        private Handle handle;
 
-            public String getSHA1() {
-                return h;
+        private Output() throws IOException {
+            try {
+                md = MessageDigest.getInstance("SHA-1");
+            } catch (NoSuchAlgorithmException e) {
+                throw new RuntimeException(e);
             }
-        };
+            partial = File.createTempFile("dp_", ".part", dir);
+            out = new BufferedOutputStream(new FileOutputStream(partial), 65536);
+        }
 
+        public void write(int b) throws IOException {
+            md.update((byte) b);
+            out.write(b);
+        }
 
+        public void write(byte[] b, int off, int len) throws IOException {
+            md.update(b, off, len);
+            out.write(b, off, len);
+        }
+
+        public void flush() throws IOException {
+            out.flush();
+        }
+
+        /**
+         * Makes the written content available in the store.
+         * @return the handle of the content
+         * @throws IOException if the content cannot be written
+         */
+        public Handle commit() throws IOException {
+            out.close();
+            final String h = convertToHex(md.digest());
+            // The blob is content addressed, concurrent writers of the same
+            // content must not truncate a file another thread is reading.
+            File location = getLocation(h);
+            if (location.exists() || !partial.renameTo(location)) {
+                partial.delete();
+            }
+            if (location.exists()) {
+                present.put(h, Boolean.TRUE);
+            }
+            handle = handle(h);
+            return handle;
+        }
+
+        public void close() throws IOException {
+            if (handle == null) {
+                out.close();
+                partial.delete();
+            }
+        }
+    }
+
+    /**
+     * Stores the given file. A file that did not change since it was last
+     * ingested is not read again.
+     * @param file the file to store
+     * @return the handle of the stored content
+     * @throws IOException if the file cannot be read
+     */
+    public Handle store(File file) throws IOException {
+        String key = key(file);
+        Handle handle = ingested.get(key);
+        if (handle == null || !isPresent(handle)) {
+            InputStream is = new FileInputStream(file);
+            try {
+                handle = store(is);
+            } finally {
+                is.close();
+            }
+            ingested.put(key, handle);
+            appendIndex(key, handle);
+        }
         return handle;
     }
 
+    /**
+     * @param file a file
+     * @return <code>true</code> if the file was already ingested and did not
+     *         change since
+     * @throws IOException if the file path cannot be computed
+     */
+    public boolean isStored(File file) throws IOException {
+        Handle handle = ingested.get(key(file));
+        return handle != null && isPresent(handle);
+    }
+
+    /**
+     * Checks that stored content is still there. Content written or found by
+     * this store during the build is not looked up on disk again.
+     * @param handle the handle of the content
+     * @return <code>true</code> if the content is in the store
+     */
+    public boolean exists(Handle handle) {
+        return present.containsKey(handle.getSHA1()) || isPresent(handle);
+    }
+
+    /**
+     * Looks the content up on disk.
+     */
+    private boolean isPresent(Handle handle) {
+        if (getLocation(handle.getSHA1()).exists()) {
+            present.put(handle.getSHA1(), Boolean.TRUE);
+            return true;
+        }
+        present.remove(handle.getSHA1());
+        return false;
+    }
+
+    /**
+     * @param handle a stored bundle
+     * @return the bundle metadata, only analyzed the first time the content
+     *         is seen
+     * @throws IOException if the bundle cannot be read
+     */
+    public BundleMetadata getMetadata(Handle handle) throws IOException {
+        return metadata.get(handle.getSHA1(), getLocation(handle.getSHA1()));
+    }
+
+    /**
+     * Gets the metadata of a bundle without storing it. The index is used
+     * when the file was already ingested and did not change since.
+     * @param file a bundle
+     * @return the bundle metadata
+     * @throws IOException if the bundle cannot be read
+     */
+    public BundleMetadata getMetadata(File file) throws IOException {
+        Handle handle = ingested.get(key(file));
+        if (handle != null && (metadata.contains(handle.getSHA1()) || getLocation(handle.getSHA1()).exists())) {
+            return getMetadata(handle);
+        }
+        return BundleMetadata.read(file);
+    }
+
+    /**
+     * Looks up content derived from stored content, e.g. a bundle whose
+     * manifest was rewritten.
+     * @param key the derivation key, usually built from the source digest
+     *        and a digest of the applied transformation
+     * @return the handle of the derived content, <code>null</code> if it is
+     *         not stored
+     */
+    public Handle getDerived(String key) {
+        Handle handle = ingested.get(key);
+        if (handle == null || !isPresent(handle)) {
+            return null;
+        }
+        return handle;
+    }
+
+    /**
+     * Records content derived from stored content.
+     * @param key the derivation key
+     * @param handle the handle of the derived content
+     */
+    public void putDerived(String key, Handle handle) {
+        Handle previous = ingested.put(key, handle);
+        if (previous == null || !previous.getSHA1().equals(handle.getSHA1())) {
+            appendIndex(key, handle);
+        }
+    }
+
+    /**
+     * @param value a string
+     * @return the SHA-1 digest of the UTF-8 encoding of the string
+     */
+    public String hash(String value) {
+        try {
+            return convertToHex(MessageDigest.getInstance("SHA-1").digest(value.getBytes("UTF-8")));
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        } catch (UnsupportedEncodingException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static String key(File file) throws IOException {
+        return file.getCanonicalPath() + ":" + file.length() + ":" + file.lastModified();
+    }
+
+    private static Handle handle(final String h) {
+        return new Handle() {
+
+            public String getSHA1() {
+                return h;
+            }
+        };
+    }
+
     public InputStream load(Handle handle) throws IOException {
         return new FileInputStream(getLocation(handle.getSHA1()));
     }
@@ -0,0 +1,71 @@
+package org.organicelement.deployment.model.utils;
+
+import org.organicelement.deployment.model.Checker;
+
+/**
+ * An OSGi version, <code>major.minor.micro.qualifier</code>, the missing
+ * parts being <code>0</code> and the qualifier empty.
+ */
+public final class Version implements Comparable<Version> {
+
+    public static final Version ZERO = new Version(new long[3], "");
+
+    private final long[] parts;
+
+    private final String qualifier;
+
+    private Version(long[] parts, String qualifier) {
+        this.parts = parts;
+        this.qualifier = qualifier;
+    }
+
+    /**
+     * @param value a version, may be <code>null</code>
+     * @return the version, <code>null</code> if it is not valid
+     */
+    public static Version parse(String value) {
+        if (value == null || !Checker.checkVersion(value)) {
+            return null;
+        }
+        long[] parts = new long[3];
+        int start = 0;
+        for (int i = 0; i < 3 && start <= value.length(); i++) {
+            int end = value.indexOf('.', start);
+            if (end == -1) {
+                end = value.length();
+            }
+            if (end - start > 18) {
+                return null;
+            }
+            parts[i] = Long.parseLong(value.substring(start, end));
+            start = end + 1;
+        }
+        return new Version(parts, start < value.length() ? value.substring(start) : "");
+    }
+
+    public int compareTo(Version other) {
+        for (int i = 0; i < 3; i++) {
+            if (parts[i] != other.parts[i]) {
+                return parts[i] < other.parts[i] ? -1 : 1;
+            }
+        }
+        return qualifier.compareTo(other.qualifier);
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof Version && compareTo((Version) other) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        return (int) (parts[0] * 961 + parts[1] * 31 + parts[2]) ^ qualifier.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder().append(parts[0]).append('.').append(parts[1]).append('.')
+                .append(parts[2]);
+        return qualifier.length() == 0 ? sb.toString() : sb.append('.').append(qualifier).toString();
+    }
+}
@@ -0,0 +1,399 @@
+package org.organicelement.deployment.model.utils;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipException;
+
+/**
+ * Reads the central directory of a ZIP file without inflating any entry.
+ * Entries can then be read individually, either inflated or as raw
+ * compressed bytes suitable for a verbatim copy.
+ * <p>
+ * ZIP64 archives are not supported and are reported with a
+ * {@link ZipException}, callers are expected to fall back on
+ * {@link java.util.zip.ZipFile}.
+ * </p>
+ */
+public final class ZipDirectory {
+
+    static final int LOCAL_HEADER = 0x04034b50;
+
+    static final int CENTRAL_HEADER = 0x02014b50;
+
+    static final int END_OF_CENTRAL_DIRECTORY = 0x06054b50;
+
+    static final int LOCAL_HEADER_SIZE = 30;
+
+    static final int CENTRAL_HEADER_SIZE = 46;
+
+    static final int END_SIZE = 22;
+
+    public static final int STORED = 0;
+
+    public static final int DEFLATED = 8;
+
+    private final File file;
+
+    private final List<Entry> entries;
+
+    private final Map<String, Entry> byName;
+
+    /**
+     * An entry as described by the central directory.
+     */
+    public static final class Entry {
+
+        final String name;
+
+        final byte[] rawName;
+
+        final int versionMadeBy;
+
+        final int versionNeeded;
+
+        final int flags;
+
+        final int method;
+
+        final int time;
+
+        final int date;
+
+        final long crc;
+
+        final long compressedSize;
+
+        final long size;
+
+        final byte[] extra;
+
+        final byte[] comment;
+
+        final int internalAttributes;
+
+        final long externalAttributes;
+
+        final long localHeaderOffset;
+
+        Entry(String name, byte[] rawName, int versionMadeBy, int versionNeeded, int flags, int method, int time,
+                int date, long crc, long compressedSize, long size, byte[] extra, byte[] comment,
+                int internalAttributes, long externalAttributes, long localHeaderOffset) {
+            this.name = name;
+            this.rawName = rawName;
+            this.versionMadeBy = versionMadeBy;
+            this.versionNeeded = versionNeeded;
+            this.flags = flags;
+            this.method = method;
+            this.time = time;
+            this.date = date;
+            this.crc = crc;
+            this.compressedSize = compressedSize;
+            this.size = size;
+            this.extra = extra;
+            this.comment = comment;
+            this.internalAttributes = internalAttributes;
+            this.externalAttributes = externalAttributes;
+            this.localHeaderOffset = localHeaderOffset;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getMethod() {
+            return method;
+        }
+
+        public long getCrc() {
+            return crc;
+        }
+
+        public long getCompressedSize() {
+            return compressedSize;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        public boolean isDirectory() {
+            return name.endsWith("/");
+        }
+    }
+
+    private ZipDirectory(File file, List<Entry> entries) {
+        this.file = file;
+        this.entries = Collections.unmodifiableList(entries);
+        this.byName = new LinkedHashMap<String, Entry>(entries.size() * 2);
+        for (Entry entry : entries) {
+            if (!byName.containsKey(entry.name)) {
+                byName.put(entry.name, entry);
+            }
+        }
+    }
+
+    /**
+     * Reads the central directory of the given file.
+     * @param file a ZIP file
+     * @return the directory
+     * @throws ZipException if the file is not a ZIP file or uses ZIP64
+     * @throws IOException if the file cannot be read
+     */
+    public static ZipDirectory read(File file) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            return new ZipDirectory(file, readEntries(raf));
+        } finally {
+            raf.close();
+        }
+    }
+
+    /**
+     * Reads the raw central directory.
+     */
+    private static byte[] readDirectory(RandomAccessFile raf, int[] count) throws IOException {
+        long length = raf.length();
+        if (length < END_SIZE) {
+            throw new ZipException("Not a ZIP file");
+        }
+
+        // Usually there is no archive comment, the record ends the file.
+        byte[] buffer = new byte[END_SIZE];
+        raf.seek(length - END_SIZE);
+        raf.readFully(buffer);
+        int end = 0;
+        if (getInt(buffer, 0) != END_OF_CENTRAL_DIRECTORY || getShort(buffer, 20) != 0) {
+            // The end of central directory record is followed by a comment of at most 64k.
+            int tail = (int) Math.min(length, END_SIZE + 0xFFFF);
+            buffer = new byte[tail];
+            raf.seek(length - tail);
+            raf.readFully(buffer);
+            end = -1;
+            for (int i = tail - END_SIZE; i >= 0; i--) {
+                if (getInt(buffer, i) == END_OF_CENTRAL_DIRECTORY
+                        && i + END_SIZE + getShort(buffer, i + 20) == tail) {
+                    end = i;
+                    break;
+                }
+            }
+            if (end == -1) {
+                throw new ZipException("End of central directory not found");
+            }
+        }
+        long endOffset = length - buffer.length + end;
+
+        count[0] = getShort(buffer, end + 10);
+        long directorySize = getUnsignedInt(buffer, end + 12);
+        long directoryOffset = getUnsignedInt(buffer, end + 16);
+        if (count[0] == 0xFFFF || directorySize == 0xFFFFFFFFL || directoryOffset == 0xFFFFFFFFL) {
+            throw new ZipException("ZIP64 archives are not supported");
+        }
+        if (directoryOffset + directorySize > endOffset) {
+            throw new ZipException("Invalid central directory");
+        }
+
+        byte[] directory = new byte[(int) directorySize];
+        raf.seek(directoryOffset);
+        raf.readFully(directory);
+        return directory;
+    }
+
+    static List<Entry> readEntries(RandomAccessFile raf) throws IOException {
+        int[] count = new int[1];
+        byte[] directory = readDirectory(raf, count);
+        List<Entry> result = new ArrayList<Entry>(count[0]);
+        int pos = 0;
+        for (int i = 0; i < count[0]; i++) {
+            result.add(readEntry(directory, pos));
+            pos += CENTRAL_HEADER_SIZE + getShort(directory, pos + 28) + getShort(directory, pos + 30)
+                    + getShort(directory, pos + 32);
+        }
+        return result;
+    }
+
+    /**
+     * Looks up a single entry, only the matching entry is decoded.
+     * @param raf the opened ZIP file
+     * @param name the entry name, compared ignoring the ASCII case
+     * @return the entry, <code>null</code> if absent
+     * @throws ZipException if the file is not a ZIP file or uses ZIP64
+     * @throws IOException if the file cannot be read
+     */
+    static Entry findEntry(RandomAccessFile raf, String name) throws IOException {
+        byte[] expected = name.getBytes("UTF-8");
+        int[] count = new int[1];
+        byte[] directory = readDirectory(raf, count);
+        int pos = 0;
+        for (int i = 0; i < count[0]; i++) {
+            if (pos + CENTRAL_HEADER_SIZE > directory.length) {
+                throw new ZipException("Invalid central directory header");
+            }
+            int nameLength = getShort(directory, pos + 28);
+            if (nameLength == expected.length && regionMatches(directory, pos + CENTRAL_HEADER_SIZE, expected)) {
+                return readEntry(directory, pos);
+            }
+            pos += CENTRAL_HEADER_SIZE + nameLength + getShort(directory, pos + 30) + getShort(directory, pos + 32);
+        }
+        return null;
+    }
+
+    private static boolean regionMatches(byte[] data, int offset, byte[] expected) {
+        for (int i = 0; i < expected.length; i++) {
+            if (Character.toUpperCase((char) data[offset + i]) != Character.toUpperCase((char) expected[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Entry readEntry(byte[] directory, int pos) throws IOException {
+        if (pos + CENTRAL_HEADER_SIZE > directory.length || getInt(directory, pos) != CENTRAL_HEADER) {
+            throw new ZipException("Invalid central directory header");
+        }
+        int nameLength = getShort(directory, pos + 28);
+        int extraLength = getShort(directory, pos + 30);
+        int commentLength = getShort(directory, pos + 32);
+        long compressedSize = getUnsignedInt(directory, pos + 20);
+        long size = getUnsignedInt(directory, pos + 24);
+        long offset = getUnsignedInt(directory, pos + 42);
+        if (compressedSize == 0xFFFFFFFFL || size == 0xFFFFFFFFL || offset == 0xFFFFFFFFL) {
+            throw new ZipException("ZIP64 archives are not supported");
+        }
+        int start = pos + CENTRAL_HEADER_SIZE;
+        if (start + nameLength + extraLength + commentLength > directory.length) {
+            throw new ZipException("Invalid central directory header");
+        }
+        byte[] rawName = slice(directory, start, nameLength);
+        return new Entry(new String(rawName, "UTF-8"), rawName,
+                getShort(directory, pos + 4),
+                getShort(directory, pos + 6),
+                getShort(directory, pos + 8),
+                getShort(directory, pos + 10),
+                getShort(directory, pos + 12),
+                getShort(directory, pos + 14),
+                getUnsignedInt(directory, pos + 16),
+                compressedSize,
+                size,
+                slice(directory, start + nameLength, extraLength),
+                slice(directory, start + nameLength + extraLength, commentLength),
+                getShort(directory, pos + 36),
+                getUnsignedInt(directory, pos + 38),
+                offset);
+    }
+
+    /**
+     * @return the file this directory was read from
+     */
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * @return the entries in central directory order
+     */
+    public List<Entry> getEntries() {
+        return entries;
+    }
+
+    /**
+     * @param name an entry name
+     * @return the entry, <code>null</code> if absent
+     */
+    public Entry getEntry(String name) {
+        return byName.get(name);
+    }
+
+    /**
+     * Computes the offset of the entry data by reading its local header.
+     * @param raf the opened ZIP file
+     * @param entry the entry
+     * @return the offset of the first byte of the compressed data
+     * @throws IOException if the local header is invalid
+     */
+    public static long getDataOffset(RandomAccessFile raf, Entry entry) throws IOException {
+        byte[] header = new byte[LOCAL_HEADER_SIZE];
+        raf.seek(entry.localHeaderOffset);
+        raf.readFully(header);
+        if (getInt(header, 0) != LOCAL_HEADER) {
+            throw new ZipException("Invalid local header for " + entry.name);
+        }
+        return entry.localHeaderOffset + LOCAL_HEADER_SIZE + getShort(header, 26) + getShort(header, 28);
+    }
+
+    /**
+     * Reads the raw, possibly compressed, bytes of an entry.
+     * @param raf the opened ZIP file
+     * @param entry the entry
+     * @return the raw bytes
+     * @throws IOException if the entry cannot be read
+     */
+    public static byte[] readRaw(RandomAccessFile raf, Entry entry) throws IOException {
+        byte[] data = new byte[(int) entry.compressedSize];
+        raf.seek(getDataOffset(raf, entry));
+        raf.readFully(data);
+        return data;
+    }
+
+    /**
+     * Reads and inflates an entry.
+     * @param raf the opened ZIP file
+     * @param entry the entry
+     * @return the uncompressed bytes
+     * @throws IOException if the entry cannot be read or uses an unsupported
+     *         compression method
+     */
+    public static byte[] read(RandomAccessFile raf, Entry entry) throws IOException {
+        byte[] raw = readRaw(raf, entry);
+        if (entry.method == STORED) {
+            return raw;
+        }
+        if (entry.method != DEFLATED) {
+            throw new ZipException("Unsupported compression method " + entry.method + " for " + entry.name);
+        }
+        Inflater inflater = new Inflater(true);
+        try {
+            byte[] data = new byte[(int) entry.size];
+            InputStream is = new InflaterInputStream(new ByteArrayInputStream(raw), inflater);
+            int pos = 0;
+            int read;
+            while (pos < data.length && (read = is.read(data, pos, data.length - pos)) > 0) {
+                pos += read;
+            }
+            if (pos != data.length) {
+                throw new ZipException("Truncated entry " + entry.name);
+            }
+            return data;
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private static byte[] slice(byte[] data, int offset, int length) {
+        byte[] result = new byte[length];
+        System.arraycopy(data, offset, result, 0, length);
+        return result;
+    }
+
+    static int getShort(byte[] b, int off) {
+        return (b[off] & 0xFF) | ((b[off + 1] & 0xFF) << 8);
+    }
+
+    static int getInt(byte[] b, int off) {
+        return (b[off] & 0xFF) | ((b[off + 1] & 0xFF) << 8) | ((b[off + 2] & 0xFF) << 16)
+                | ((b[off + 3] & 0xFF) << 24);
+    }
+
+    static long getUnsignedInt(byte[] b, int off) {
+        return getInt(b, off) & 0xFFFFFFFFL;
+    }
+}
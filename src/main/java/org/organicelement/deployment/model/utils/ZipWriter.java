@@ -0,0 +1,197 @@
+package org.organicelement.deployment.model.utils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipException;
+
+/**
+ * Writes a ZIP file whose entries are either copied verbatim, compressed
+ * bytes, CRC and sizes included, from another ZIP file or compressed on the
+ * fly. Unlike {@link java.util.zip.ZipOutputStream}, copying an entry never
+ * inflates nor deflates it.
+ * <p>
+ * The output only depends on the input: new entries take the modification
+ * time of the entry they replace, or the fixed 1980-01-01 00:00 time, never
+ * the current time.
+ * </p>
+ */
+public final class ZipWriter {
+
+    /**
+     * 1980-01-01, the first MS-DOS date.
+     */
+    private static final int FIXED_DATE = (1 << 5) | 1;
+
+    private static final int FIXED_TIME = 0;
+
+    private final OutputStream out;
+
+    private final List<ZipDirectory.Entry> written = new ArrayList<ZipDirectory.Entry>();
+
+    private final byte[] buffer = new byte[65536];
+
+    private long offset;
+
+    /**
+     * @param out the destination, not closed by this writer
+     */
+    public ZipWriter(OutputStream out) {
+        this.out = out;
+    }
+
+    /**
+     * Copies an entry verbatim.
+     * @param raf the opened source ZIP file
+     * @param entry the source entry
+     * @throws IOException if the entry cannot be copied
+     */
+    public void copy(RandomAccessFile raf, ZipDirectory.Entry entry) throws IOException {
+        long dataOffset = ZipDirectory.getDataOffset(raf, entry);
+        // Sizes are known, the data descriptor of the source is not copied.
+        ZipDirectory.Entry copy = new ZipDirectory.Entry(entry.name, entry.rawName, entry.versionMadeBy,
+                entry.versionNeeded, entry.flags & ~0x08, entry.method, entry.time, entry.date, entry.crc,
+                entry.compressedSize, entry.size, entry.extra, entry.comment, entry.internalAttributes,
+                entry.externalAttributes, offset);
+        writeLocalHeader(copy);
+
+        raf.seek(dataOffset);
+        long remaining = entry.compressedSize;
+        while (remaining > 0) {
+            int read = raf.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+            if (read < 0) {
+                throw new ZipException("Truncated entry " + entry.name);
+            }
+            out.write(buffer, 0, read);
+            remaining -= read;
+        }
+        offset += entry.compressedSize;
+        written.add(copy);
+    }
+
+    /**
+     * Writes a new deflated entry, with the fixed modification time.
+     * @param name the entry name
+     * @param data the uncompressed content
+     * @throws IOException if the entry cannot be written
+     */
+    public void write(String name, byte[] data) throws IOException {
+        write(name, data, null);
+    }
+
+    /**
+     * Writes a new deflated entry.
+     * @param name the entry name
+     * @param data the uncompressed content
+     * @param source the entry whose modification time is kept, may be
+     *        <code>null</code> for the fixed time
+     * @throws IOException if the entry cannot be written
+     */
+    public void write(String name, byte[] data, ZipDirectory.Entry source) throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(data);
+
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(Math.max(64, data.length / 2));
+        try {
+            deflater.setInput(data);
+            deflater.finish();
+            while (!deflater.finished()) {
+                int length = deflater.deflate(buffer);
+                compressed.write(buffer, 0, length);
+            }
+        } finally {
+            deflater.end();
+        }
+
+        byte[] rawName = name.getBytes("UTF-8");
+        ZipDirectory.Entry entry = new ZipDirectory.Entry(name, rawName, 20, 20, 0x0800, ZipDirectory.DEFLATED,
+                source == null ? FIXED_TIME : source.time, source == null ? FIXED_DATE : source.date,
+                crc.getValue(), compressed.size(), data.length, new byte[0], new byte[0], 0, 0, offset);
+        writeLocalHeader(entry);
+        compressed.writeTo(out);
+        offset += compressed.size();
+        written.add(entry);
+    }
+
+    /**
+     * Writes the central directory. The underlying stream is flushed but not
+     * closed.
+     * @throws IOException if the directory cannot be written
+     */
+    public void finish() throws IOException {
+        if (written.size() >= 0xFFFF || offset >= 0xFFFFFFFFL) {
+            throw new ZipException("ZIP64 archives are not supported");
+        }
+        long start = offset;
+        for (ZipDirectory.Entry entry : written) {
+            byte[] header = new byte[ZipDirectory.CENTRAL_HEADER_SIZE];
+            putInt(header, 0, ZipDirectory.CENTRAL_HEADER);
+            putShort(header, 4, entry.versionMadeBy);
+            putShort(header, 6, entry.versionNeeded);
+            putShort(header, 8, entry.flags);
+            putShort(header, 10, entry.method);
+            putShort(header, 12, entry.time);
+            putShort(header, 14, entry.date);
+            putInt(header, 16, (int) entry.crc);
+            putInt(header, 20, (int) entry.compressedSize);
+            putInt(header, 24, (int) entry.size);
+            putShort(header, 28, entry.rawName.length);
+            putShort(header, 30, entry.extra.length);
+            putShort(header, 32, entry.comment.length);
+            putShort(header, 34, 0);
+            putShort(header, 36, entry.internalAttributes);
+            putInt(header, 38, (int) entry.externalAttributes);
+            putInt(header, 42, (int) entry.localHeaderOffset);
+            out.write(header);
+            out.write(entry.rawName);
+            out.write(entry.extra);
+            out.write(entry.comment);
+            offset += header.length + entry.rawName.length + entry.extra.length + entry.comment.length;
+        }
+
+        byte[] end = new byte[ZipDirectory.END_SIZE];
+        putInt(end, 0, ZipDirectory.END_OF_CENTRAL_DIRECTORY);
+        putShort(end, 8, written.size());
+        putShort(end, 10, written.size());
+        putInt(end, 12, (int) (offset - start));
+        putInt(end, 16, (int) start);
+        out.write(end);
+        out.flush();
+    }
+
+    private void writeLocalHeader(ZipDirectory.Entry entry) throws IOException {
+        byte[] header = new byte[ZipDirectory.LOCAL_HEADER_SIZE];
+        putInt(header, 0, ZipDirectory.LOCAL_HEADER);
+        putShort(header, 4, entry.versionNeeded);
+        putShort(header, 6, entry.flags);
+        putShort(header, 8, entry.method);
+        putShort(header, 10, entry.time);
+        putShort(header, 12, entry.date);
+        putInt(header, 14, (int) entry.crc);
+        putInt(header, 18, (int) entry.compressedSize);
+        putInt(header, 22, (int) entry.size);
+        putShort(header, 26, entry.rawName.length);
+        putShort(header, 28, 0);
+        out.write(header);
+        out.write(entry.rawName);
+        offset += header.length + entry.rawName.length;
+    }
+
+    private static void putShort(byte[] b, int off, int value) {
+        b[off] = (byte) value;
+        b[off + 1] = (byte) (value >>> 8);
+    }
+
+    private static void putInt(byte[] b, int off, int value) {
+        b[off] = (byte) value;
+        b[off + 1] = (byte) (value >>> 8);
+        b[off + 2] = (byte) (value >>> 16);
+        b[off + 3] = (byte) (value >>> 24);
+    }
+}
@@ -0,0 +1,256 @@
+package org.organicelement.deployment.mojo;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.organicelement.deployment.model.utils.BundleMetadata;
+import org.organicelement.deployment.model.utils.PackageIndex;
+import org.organicelement.deployment.model.utils.Store;
+
+/**
+ * The bundles already installed on the target devices. The bundles of a
+ * deployment package provided by the base image, with the same symbolic name
+ * and version, are not packaged.
+ * <p>
+ * The descriptor is either a directory of bundles, e.g. copied from a
+ * device, or a text file with one bundle per line. A line is a
+ * <code>symbolic-name;version</code> pair, a <code>symbolic-name (version)</code>
+ * pair as listed by the Felix <code>lb -s</code> command, or a symbolic name
+ * alone which matches any version. Lines starting with <code>#</code> are
+ * ignored.
+ * </p>
+ * <p>
+ * The packages exported on the target, used to check that the bundles of a
+ * package resolve, are those of the bundles of a descriptor directory, of the
+ * bundles left out of the package and the configured <code>packages</code>,
+ * e.g. the system packages of the framework.
+ * </p>
+ */
+public class BaseImage {
+
+    /**
+     * The directory or text file describing the base image.
+     */
+    private File descriptor;
+
+    /**
+     * Additional <code>symbolic-name;version</code> entries.
+     */
+    private List<String> bundles = new ArrayList<String>();
+
+    /**
+     * Additional Export-Package clauses provided by the target.
+     */
+    private List<String> packages = new ArrayList<String>();
+
+    /**
+     * The loaded <code>symbolic-name;version</code> and symbolic name keys.
+     */
+    private Set<String> provided;
+
+    /**
+     * The packages exported on the target, loaded with the bundles.
+     */
+    private PackageIndex exports;
+
+    /**
+     * @param symbolicName a bundle symbolic name
+     * @param version the bundle version, may be <code>null</code>
+     * @return <code>true</code> if the base image provides this bundle
+     * @throws MojoExecutionException if the descriptor cannot be read
+     */
+    public final synchronized boolean provides(String symbolicName, String version) throws MojoExecutionException {
+        load();
+        return provided.contains(symbolicName) || provided.contains(getKey(symbolicName, version));
+    }
+
+    /**
+     * @return the packages exported on the target
+     * @throws MojoExecutionException if the descriptor cannot be read
+     */
+    public final synchronized PackageIndex getExports() throws MojoExecutionException {
+        load();
+        return exports;
+    }
+
+    /**
+     * Adds the exports of a bundle left out of the package.
+     * @param metadata the bundle metadata
+     * @throws MojoExecutionException if the descriptor cannot be read
+     */
+    final synchronized void addExports(BundleMetadata metadata) throws MojoExecutionException {
+        try {
+            getExports().addExports(metadata);
+        } catch (IllegalArgumentException e) {
+            throw new MojoExecutionException("Invalid Export-Package header in " + metadata.getSymbolicName()
+                    + " : " + e.getMessage());
+        }
+    }
+
+    private void load() throws MojoExecutionException {
+        if (provided != null) {
+            return;
+        }
+        Set<String> keys = new HashSet<String>();
+        PackageIndex index = new PackageIndex();
+        for (String bundle : bundles) {
+            addEntry(keys, bundle);
+        }
+        try {
+            for (String clauses : packages) {
+                index.addExports("base image", clauses);
+            }
+        } catch (IllegalArgumentException e) {
+            throw new MojoExecutionException("Invalid base image package : " + e.getMessage());
+        }
+        if (descriptor != null) {
+            readDescriptor(keys, index);
+        }
+        provided = keys;
+        exports = index;
+    }
+
+    private void readDescriptor(Set<String> keys, PackageIndex index) throws MojoExecutionException {
+        if (!descriptor.exists()) {
+            throw new MojoExecutionException("The base image descriptor " + descriptor + " does not exist");
+        }
+        try {
+            if (descriptor.isDirectory()) {
+                File[] files = descriptor.listFiles();
+                for (File file : files) {
+                    if (file.isFile() && file.getName().endsWith(".jar")) {
+                        BundleMetadata metadata = Store.STORE.getMetadata(file);
+                        if (metadata.getSymbolicName() != null) {
+                            keys.add(getKey(metadata.getSymbolicName(), metadata.getVersion()));
+                            index.addExports(metadata);
+                        }
+                    }
+                }
+            } else {
+                BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(descriptor),
+                        "UTF-8"));
+                try {
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        addEntry(keys, line);
+                    }
+                } finally {
+                    reader.close();
+                }
+            }
+        } catch (IOException e) {
+            throw new MojoExecutionException("Cannot read the base image descriptor " + descriptor + " : "
+                    + e.getMessage());
+        } catch (IllegalArgumentException e) {
+            throw new MojoExecutionException("Invalid Export-Package header in the base image " + descriptor
+                    + " : " + e.getMessage());
+        }
+    }
+
+    private static void addEntry(Set<String> keys, String line) {
+        String entry = line.trim();
+        if (entry.length() == 0 || entry.startsWith("#")) {
+            return;
+        }
+        // Felix "lb -s" lists "id|state|level|name (version)".
+        int pipe = entry.lastIndexOf('|');
+        if (pipe != -1) {
+            entry = entry.substring(pipe + 1).trim();
+        }
+
+        String name = entry;
+        String version = null;
+        int separator = entry.indexOf(';');
+        if (separator != -1) {
+            name = entry.substring(0, separator);
+            version = entry.substring(separator + 1);
+            if (version.trim().startsWith("version=") || version.trim().startsWith("bundle-version=")) {
+                version = version.substring(version.indexOf('=') + 1);
+            }
+        } else if (entry.endsWith(")") && entry.indexOf('(') != -1) {
+            name = entry.substring(0, entry.lastIndexOf('('));
+            version = entry.substring(entry.lastIndexOf('(') + 1, entry.length() - 1);
+        }
+        name = name.trim();
+        if (version == null || version.trim().length() == 0) {
+            keys.add(name);
+        } else {
+            keys.add(getKey(name, version.trim().replace("\"", "")));
+        }
+    }
+
+    /**
+     * Versions are compared once normalized, <code>1.0</code> is
+     * <code>1.0.0</code>.
+     */
+    static String getKey(String symbolicName, String version) {
+        if (version == null) {
+            return symbolicName + ";0.0.0";
+        }
+        String[] parts = version.trim().split("\\.", 4);
+        StringBuilder sb = new StringBuilder(symbolicName).append(';');
+        for (int i = 0; i < 3; i++) {
+            sb.append(i < parts.length && parts[i].length() > 0 ? parts[i] : "0");
+            if (i < 2) {
+                sb.append('.');
+            }
+        }
+        if (parts.length == 4 && parts[3].length() > 0) {
+            sb.append('.').append(parts[3]);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * @return the descriptor
+     */
+    public final File getDescriptor() {
+        return descriptor;
+    }
+
+    /**
+     * @param descriptor the descriptor to set
+     */
+    public final synchronized void setDescriptor(final File descriptor) {
+        this.descriptor = descriptor;
+        this.provided = null;
+    }
+
+    /**
+     * @return the additional entries
+     */
+    public final List<String> getBundles() {
+        return bundles;
+    }
+
+    /**
+     * @param bundles the additional entries to set
+     */
+    public final synchronized void setBundles(final List<String> bundles) {
+        this.bundles = bundles;
+        this.provided = null;
+    }
+
+    /**
+     * @return the additional Export-Package clauses
+     */
+    public final List<String> getPackages() {
+        return packages;
+    }
+
+    /**
+     * @param packages the additional Export-Package clauses to set
+     */
+    public final synchronized void setPackages(final List<String> packages) {
+        this.packages = packages;
+        this.provided = null;
+    }
+}
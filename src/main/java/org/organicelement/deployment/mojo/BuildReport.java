@@ -0,0 +1,303 @@
+package org.organicelement.deployment.mojo;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * Collects the time spent in each phase of the package goal and on each
+ * artifact. All durations are measured with {@link System#nanoTime()}.
+ * Instances are safe for use by concurrent assembly threads.
+ * <p>
+ * A phase may run on several threads at once, its wall-clock duration is the
+ * time covered by at least one of its runs while its summed duration adds up
+ * every run, and thus exceeds the wall-clock duration when runs overlap.
+ * </p>
+ */
+public class BuildReport {
+
+    /**
+     * Number of slowest items written to the Maven log.
+     */
+    private static final int SLOWEST = 5;
+
+    private final long start = System.nanoTime();
+
+    private long end;
+
+    /**
+     * The runs of each phase, in the order the phases first ran.
+     */
+    private final Map<String, List<long[]>> phases = new LinkedHashMap<String, List<long[]>>();
+
+    private final List<Item> items = new ArrayList<Item>();
+
+    /**
+     * A timed unit of work on a single artifact or resource.
+     */
+    public static final class Item {
+
+        private final String phase;
+
+        private final String name;
+
+        private final long nanos;
+
+        private final long bytes;
+
+        private final boolean cacheHit;
+
+        Item(String phase, String name, long nanos, long bytes, boolean cacheHit) {
+            this.phase = phase;
+            this.name = name;
+            this.nanos = nanos;
+            this.bytes = bytes;
+            this.cacheHit = cacheHit;
+        }
+
+        public String getPhase() {
+            return phase;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getNanos() {
+            return nanos;
+        }
+
+        public long getBytes() {
+            return bytes;
+        }
+
+        public boolean isCacheHit() {
+            return cacheHit;
+        }
+    }
+
+    /**
+     * @return a timestamp to pass to {@link #phase(String, long)} or
+     *         {@link #item(String, String, long, long, boolean)}
+     */
+    public long now() {
+        return System.nanoTime();
+    }
+
+    /**
+     * Records a run of a phase, from the given timestamp until now.
+     * @param phase the phase name
+     * @param since the timestamp taken when the run started
+     */
+    public void phase(String phase, long since) {
+        phase(phase, since, System.nanoTime());
+    }
+
+    /**
+     * Records a run of a phase.
+     * @param phase the phase name
+     * @param since the timestamp taken when the run started
+     * @param until the timestamp taken when the run ended
+     */
+    synchronized void phase(String phase, long since, long until) {
+        List<long[]> runs = phases.get(phase);
+        if (runs == null) {
+            runs = new ArrayList<long[]>();
+            phases.put(phase, runs);
+        }
+        runs.add(new long[] { since, until });
+    }
+
+    /**
+     * Records the time elapsed since the given timestamp for one artifact.
+     * @param phase the phase name
+     * @param name the artifact or resource name
+     * @param since the timestamp taken when the work started
+     * @param bytes the number of bytes handled
+     * @param cacheHit whether the work was served from a cache
+     */
+    public synchronized void item(String phase, String name, long since, long bytes, boolean cacheHit) {
+        items.add(new Item(phase, name, System.nanoTime() - since, bytes, cacheHit));
+    }
+
+    /**
+     * Marks the end of the build.
+     */
+    public synchronized void finish() {
+        end = System.nanoTime();
+    }
+
+    /**
+     * @return the total duration of the build, in nanoseconds
+     */
+    public synchronized long getTotal() {
+        return (end == 0 ? System.nanoTime() : end) - start;
+    }
+
+    /**
+     * @return the wall-clock duration of each phase, in nanoseconds
+     */
+    public synchronized Map<String, Long> getPhases() {
+        Map<String, Long> durations = new LinkedHashMap<String, Long>();
+        for (Map.Entry<String, List<long[]>> phase : phases.entrySet()) {
+            List<long[]> runs = new ArrayList<long[]>(phase.getValue());
+            Collections.sort(runs, new Comparator<long[]>() {
+
+                public int compare(long[] o1, long[] o2) {
+                    return o1[0] < o2[0] ? -1 : (o1[0] == o2[0] ? 0 : 1);
+                }
+            });
+            long total = 0;
+            long covered = Long.MIN_VALUE;
+            for (long[] run : runs) {
+                // Only the part of the run not covered by the previous ones.
+                long from = Math.max(run[0], covered);
+                if (run[1] > from) {
+                    total += run[1] - from;
+                    covered = run[1];
+                }
+            }
+            durations.put(phase.getKey(), Long.valueOf(total));
+        }
+        return durations;
+    }
+
+    /**
+     * @return the duration of each phase summed over its runs, in
+     *         nanoseconds
+     */
+    public synchronized Map<String, Long> getSummedPhases() {
+        Map<String, Long> durations = new LinkedHashMap<String, Long>();
+        for (Map.Entry<String, List<long[]>> phase : phases.entrySet()) {
+            long total = 0;
+            for (long[] run : phase.getValue()) {
+                total += run[1] - run[0];
+            }
+            durations.put(phase.getKey(), Long.valueOf(total));
+        }
+        return durations;
+    }
+
+    /**
+     * @return the recorded items, slowest first
+     */
+    public synchronized List<Item> getItems() {
+        List<Item> sorted = new ArrayList<Item>(items);
+        Collections.sort(sorted, new Comparator<Item>() {
+
+            public int compare(Item o1, Item o2) {
+                return o1.nanos < o2.nanos ? 1 : (o1.nanos == o2.nanos ? 0 : -1);
+            }
+        });
+        return sorted;
+    }
+
+    /**
+     * Writes the totals and the slowest items to the given log.
+     * @param log the Maven log
+     */
+    public void log(Log log) {
+        log.info("Deployment package built in " + millis(getTotal()) + " ms");
+        Map<String, Long> summed = getSummedPhases();
+        for (Map.Entry<String, Long> phase : getPhases().entrySet()) {
+            long wall = phase.getValue().longValue();
+            long sum = summed.get(phase.getKey()).longValue();
+            log.info("  " + phase.getKey() + " : " + millis(wall) + " ms"
+                    + (sum > wall ? " (" + millis(sum) + " ms summed over threads)" : ""));
+        }
+        List<Item> sorted = getItems();
+        if (!sorted.isEmpty()) {
+            log.info("Slowest items :");
+            for (Item item : sorted.subList(0, Math.min(SLOWEST, sorted.size()))) {
+                log.info("  " + item.phase + " " + item.name + " : " + millis(item.nanos) + " ms"
+                        + (item.cacheHit ? " (cached)" : ""));
+            }
+        }
+    }
+
+    /**
+     * Writes the full breakdown as JSON.
+     * @param file the report file
+     * @throws IOException if the file cannot be written
+     */
+    public void write(File file) throws IOException {
+        file.getParentFile().mkdirs();
+        Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+        try {
+            writer.write("{\n  \"totalNanos\": " + getTotal() + ",\n  \"phases\": {");
+            String del = "\n";
+            for (Map.Entry<String, Long> phase : getPhases().entrySet()) {
+                writer.write(del + "    " + quote(phase.getKey()) + ": " + phase.getValue());
+                del = ",\n";
+            }
+            writer.write("\n  },\n  \"summedPhases\": {");
+            del = "\n";
+            for (Map.Entry<String, Long> phase : getSummedPhases().entrySet()) {
+                writer.write(del + "    " + quote(phase.getKey()) + ": " + phase.getValue());
+                del = ",\n";
+            }
+            writer.write("\n  },\n  \"items\": [");
+            del = "\n";
+            for (Item item : getItems()) {
+                writer.write(del + "    {\"phase\": " + quote(item.phase) + ", \"name\": " + quote(item.name)
+                        + ", \"nanos\": " + item.nanos + ", \"bytes\": " + item.bytes
+                        + ", \"cacheHit\": " + item.cacheHit + "}");
+                del = ",\n";
+            }
+            writer.write("\n  ]\n}\n");
+        } finally {
+            writer.close();
+        }
+    }
+
+    private static long millis(long nanos) {
+        return nanos / 1000000L;
+    }
+
+    private static String quote(String value) {
+        StringBuilder sb = new StringBuilder(value.length() + 2);
+        sb.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    sb.append("\\\"");
+                    break;
+                case '\\':
+                    sb.append("\\\\");
+                    break;
+                case '\n':
+                    sb.append("\\n");
+                    break;
+                case '\r':
+                    sb.append("\\r");
+                    break;
+                case '\t':
+                    sb.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        String hex = Integer.toHexString(c);
+                        sb.append("\\u");
+                        for (int j = hex.length(); j < 4; j++) {
+                            sb.append('0');
+                        }
+                        sb.append(hex);
+                    } else {
+                        sb.append(c);
+                    }
+            }
+        }
+        return sb.append('"').toString();
+    }
+}
@@ -17,8 +17,8 @@ public class BundleHeader implements Header {
 	}
 	
 	public BundleHeader(String headerName, String value) {
-		headerName = headerName;
-		value = value;
+		this.headerName = headerName;
+		this.value = value;
 	}
 
 	public String getName() {
@@ -26,7 +26,7 @@ public class BundleHeader implements Header {
 	}
 	
 	public void setName(String headerName) {
-		headerName = headerName;
+		this.headerName = headerName;
 	}
 
 	public String getValue() {
@@ -34,7 +34,7 @@ public class BundleHeader implements Header {
 	}
 
 	public void setValue(String value) {
-		value = value;
+		this.value = value;
 	}
 	
 	public Header clone() {
@@ -1,17 +1,25 @@
 package org.organicelement.deployment.mojo;
 
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
 import java.io.File;
-import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.jar.JarFile;
-import java.util.jar.Manifest;
+import java.util.Set;
+import java.util.TreeSet;
 
-import org.organicelement.deployment.mojo.util.FileUtil;
 import org.apache.maven.plugin.MojoExecutionException;
 
 import org.organicelement.deployment.model.DeploymentPackage;
-import org.organicelement.deployment.mojo.util.ManifestBuilder;
+import org.organicelement.deployment.model.utils.ClassReferences;
+import org.organicelement.deployment.model.utils.Handle;
+import org.organicelement.deployment.model.utils.Store;
+import org.organicelement.deployment.mojo.transform.BundlePipeline;
+import org.organicelement.deployment.mojo.transform.BundleTransformer;
+import org.organicelement.deployment.mojo.transform.HeaderTransformer;
+import org.organicelement.deployment.mojo.transform.ImportTransformer;
 
 /**
  * <p>
@@ -42,12 +50,27 @@ public class BundleResource implements Resource {
     private org.organicelement.deployment.model.BundleResource bundle;
 
     private DeploymentPackageMojo mojo;
+
+    private boolean prepared;
+
+    private long removedBytes;
     
     /**
      * The header entries.
      */
     private List<Header> headerEntries = null;
 
+    /**
+     * The transformers applied after the headers.
+     */
+    private List<BundleTransformer> transformers = null;
+
+    /**
+     * Adds the packages referred by the bundle classes to its imports,
+     * the package setting applies when not set.
+     */
+    private Boolean analyzeImports;
+
     /**
      * Constructor which initializes the instance of the {@link BundleResource}.
      */
@@ -58,6 +81,7 @@ public class BundleResource implements Resource {
         targetPath = null;
         mojo = null;
         headerEntries = new ArrayList<Header>();
+        transformers = new ArrayList<BundleTransformer>();
 
         bundle = new org.organicelement.deployment.model.BundleResource();
     }
@@ -67,53 +91,7 @@ public class BundleResource implements Resource {
     }
 
     public void resolve(DeploymentPackage dp, File baseDir) throws MojoExecutionException {
-        if (resolvedFile == null) {
-            resolvedFile = mojo.resolveResource(groupId, artifactId,
-                    version, classifier);
-            try {
-                bundle.setURL(resolvedFile.toURI().toURL());
-            } catch (Exception e) {
-                throw new MojoExecutionException(
-                        "Cannot compute the bundle url : " + e.getMessage());
-            }
-        }
-        
-        final List<Header> addedHeaders = getHeaders();
-		if ((addedHeaders != null) && (!addedHeaders.isEmpty())) {
-			try {
-				// modify manifest file to add header values
-				JarFile bundleFile = new JarFile(resolvedFile);
-				Manifest manifest = bundleFile.getManifest();
-				ManifestBuilder mfBuilder = new ManifestBuilder();
-				for (Header header : addedHeaders) {
-					if (!(header instanceof BundleHeader))
-						continue;
-					
-					mfBuilder.addHeader((BundleHeader) header);
-				}
-
-				// modify manifest
-				Manifest manipulatedMf = mfBuilder.build(manifest);
-				File manipulatedMfFile = File.createTempFile("mf_", ".mf");
-				FileOutputStream mfFos = new FileOutputStream(manipulatedMfFile);
-				manipulatedMf.write(mfFos);
-				mfFos.flush();
-				mfFos.close();
-
-				File manipulatedBundleFile = File.createTempFile("bundle_",
-						".jar");
-				if (manipulatedBundleFile == null)
-					throw new MojoExecutionException("Cannot create temp file");
-
-				FileUtil.copyBundleFile(bundleFile, manipulatedBundleFile,
-						manipulatedMfFile);
-
-				bundle.setURL(manipulatedBundleFile.toURI().toURL());
-			} catch (Exception e) {
-				throw new MojoExecutionException(
-						"Cannot manipulate manifest file of the original bundle url : " + e.getMessage());
-			}
-		}
+        prepare();
 
         String resourceId = resolvedFile.getName();
         if (targetPath != null && targetPath.length() > 0) {
@@ -126,6 +104,198 @@ public class BundleResource implements Resource {
         dp.addBundle(bundle);
     }
 
+    /**
+     * Resolves the bundle and adds the configured headers to its manifest.
+     * Preparing an already prepared bundle does nothing, this lets the mojo
+     * prepare all bundles concurrently before adding them, in order, to
+     * their package.
+     * @throws MojoExecutionException if the bundle cannot be resolved or
+     *         manipulated
+     */
+    final void prepare() throws MojoExecutionException {
+        if (!prepared) {
+            getResolvedFile();
+            manipulate();
+            prepared = true;
+        }
+    }
+
+    /**
+     * Ingests the resolved file again after it changed on disk. The bundle
+     * keeps its place in the deployment package, which indexes its new
+     * content afterwards.
+     * @param dp the deployment package the bundle was added to
+     * @throws MojoExecutionException if the bundle cannot be read
+     */
+    public void refresh(DeploymentPackage dp) throws MojoExecutionException {
+        try {
+            try {
+                bundle.setFile(getResolvedFile());
+            } catch (Exception e) {
+                throw new MojoExecutionException(e.getMessage());
+            }
+            manipulate();
+        } finally {
+            dp.updateBundle(bundle);
+        }
+    }
+
+    /**
+     * Applies the configured headers and transformers to the bundle, if any,
+     * in a single pass. The transformed bundle is stored under a key derived
+     * from the source bundle digest and the transformations, so it is only
+     * rewritten when one of them changes. A bundle the transformations leave
+     * unchanged, e.g. whose manifest already holds the header values, is not
+     * rewritten at all.
+     * @throws MojoExecutionException if the bundle cannot be transformed
+     */
+    private void manipulate() throws MojoExecutionException {
+        final BundlePipeline pipeline;
+        try {
+            pipeline = getPipeline();
+        } catch (IOException e) {
+            throw new MojoExecutionException(
+                    "Cannot analyze the bundle " + groupId + ":" + artifactId + " : " + e.getMessage());
+        }
+        if (!pipeline.isEmpty()) {
+            final BuildReport report = mojo.getReport();
+            final long start = report.now();
+            try {
+                final Handle source = Store.STORE.store(resolvedFile);
+                final String id = source.getSHA1() + ":" + Store.STORE.hash(pipeline.getKey());
+                final String key = "transform:" + id;
+                final String removedKey = "removed:" + id;
+                Handle transformed = Store.STORE.getDerived(key);
+                final Handle removed = Store.STORE.getDerived(removedKey);
+                if (transformed != null && removed != null) {
+                    bundle.setHandle(transformed);
+                    removedBytes = readRemovedBytes(removed);
+                    report.item("transform", groupId + ":" + artifactId, start, resolvedFile.length(), true);
+                    if (removedBytes > 0) {
+                        report.item("strip", groupId + ":" + artifactId, start, removedBytes, true);
+                    }
+                    return;
+                }
+
+                BundlePipeline.Plan plan = pipeline.plan(resolvedFile);
+                removedBytes = plan.getRemovedBytes();
+                if (plan.getRemovedEntries() > 0) {
+                    mojo.getLogger().debug("Removed " + plan.getRemovedEntries() + " entries (" + removedBytes
+                            + " bytes) from " + groupId + ":" + artifactId);
+                }
+                if (plan.getKeptEntries() > 0) {
+                    mojo.getLogger().warn(groupId + ":" + artifactId + " is signed, keeping its "
+                            + plan.getKeptEntries() + " excluded entries");
+                }
+                if (plan.isChanged()) {
+                    Store.Output os = Store.STORE.create();
+                    try {
+                        plan.write(os);
+                        transformed = os.commit();
+                    } finally {
+                        os.close();
+                    }
+                } else {
+                    transformed = source;
+                }
+
+                Store.STORE.putDerived(key, transformed);
+                // The removed entries are not known from the transformed bundle alone.
+                Store.STORE.putDerived(removedKey,
+                        Store.STORE.store(new ByteArrayInputStream(String.valueOf(removedBytes).getBytes("UTF-8"))));
+                bundle.setHandle(transformed);
+                report.item("transform", groupId + ":" + artifactId, start,
+                        Store.STORE.getFile(transformed).length(), false);
+                if (removedBytes > 0) {
+                    report.item("strip", groupId + ":" + artifactId, start, removedBytes, false);
+                }
+            } catch (Exception e) {
+                throw new MojoExecutionException(
+                        "Cannot transform the bundle " + groupId + ":" + artifactId + " : " + e.getMessage());
+            } finally {
+                report.phase("transform", start);
+            }
+        }
+    }
+
+    /**
+     * @return the number of bytes removed from the bundle, as recorded when
+     *         it was transformed
+     */
+    private static long readRemovedBytes(Handle handle) throws IOException {
+        final BufferedReader reader = new BufferedReader(new InputStreamReader(Store.STORE.load(handle), "UTF-8"));
+        try {
+            final String line = reader.readLine();
+            return line == null ? 0 : Long.parseLong(line.trim());
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * @return the transformations of this bundle, the headers first, then
+     *         the computed imports
+     * @throws IOException if the bundle classes cannot be analyzed
+     */
+    private BundlePipeline getPipeline() throws IOException {
+        final List<BundleTransformer> list = new ArrayList<BundleTransformer>();
+        final List<BundleHeader> bundleHeaders = new ArrayList<BundleHeader>();
+        if (headerEntries != null) {
+            for (Header header : headerEntries) {
+                if (header instanceof BundleHeader) {
+                    bundleHeaders.add((BundleHeader) header);
+                }
+            }
+        }
+        if (!bundleHeaders.isEmpty()) {
+            list.add(new HeaderTransformer(bundleHeaders));
+        }
+        if (Boolean.TRUE.equals(analyzeImports)) {
+            list.add(new ImportTransformer(getImportedPackages()));
+        }
+        if (transformers != null) {
+            list.addAll(transformers);
+        }
+        return new BundlePipeline(list);
+    }
+
+    /**
+     * Analyzes the bundle classes, the result is cached per bundle digest.
+     * @return the packages referred by the bundle classes and not contained
+     *         in the bundle
+     * @throws IOException if the bundle classes cannot be analyzed
+     */
+    private Set<String> getImportedPackages() throws IOException {
+        final BuildReport report = mojo.getReport();
+        final long start = report.now();
+        final String key = "imports:" + Store.STORE.store(resolvedFile).getSHA1();
+        final Handle cached = Store.STORE.getDerived(key);
+        final Set<String> packages = new TreeSet<String>();
+        if (cached != null) {
+            final BufferedReader reader = new BufferedReader(new InputStreamReader(Store.STORE.load(cached), "UTF-8"));
+            try {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (line.length() > 0) {
+                        packages.add(line);
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        } else {
+            packages.addAll(ClassReferences.getImportedPackages(resolvedFile));
+            final StringBuilder sb = new StringBuilder();
+            for (String pkg : packages) {
+                sb.append(pkg).append('\n');
+            }
+            Store.STORE.putDerived(key, Store.STORE.store(new ByteArrayInputStream(sb.toString().getBytes("UTF-8"))));
+        }
+        report.item("analyze", groupId + ":" + artifactId, start, resolvedFile.length(), cached != null);
+        report.phase("analyze", start);
+        return packages;
+    }
+
     /**
      * @return the path and the name of the resource
      * @see Resource#getResourceId()
@@ -241,21 +411,62 @@ public class BundleResource implements Resource {
         this.headerEntries = headerEntries;
     }
 
+    /**
+     * @return the compressed size of the entries removed from the bundle
+     */
+    public final long getRemovedBytes() {
+        return removedBytes;
+    }
+
+    /**
+     * @return the transformers
+     */
+    public final List<BundleTransformer> getTransformers() {
+        return transformers;
+    }
+
+    /**
+     * @param transformers the transformers to set
+     */
+    public final void setTransformers(final List<BundleTransformer> transformers) {
+        this.transformers = transformers;
+    }
+
+    /**
+     * @return <code>true</code> if the computed imports are added,
+     *         <code>null</code> if the package setting applies
+     */
+    public final Boolean getAnalyzeImports() {
+        return analyzeImports;
+    }
+
+    /**
+     * @param analyzeImports the import analysis flag to set
+     */
+    public final void setAnalyzeImports(final Boolean analyzeImports) {
+        this.analyzeImports = analyzeImports;
+    }
+
     /**
      * @return the resolvedFile
      * @throws MojoExecutionException
      */
     public final File getResolvedFile() throws MojoExecutionException {
         if (resolvedFile == null) {
-        	//System.out.println("MOJO : " + mojo);
-        	System.out.println("Artifact : " + groupId + ":" + artifactId + ":" + version);
+            mojo.getLogger().debug("Artifact : " + groupId + ":" + artifactId + ":" + version);
 
             resolvedFile = mojo.resolveResource(groupId, artifactId,
                     version, classifier);
+            final BuildReport report = mojo.getReport();
+            final long start = report.now();
             try {
-                bundle.setURL(resolvedFile.toURI().toURL());
+                boolean stored = Store.STORE.isStored(resolvedFile);
+                bundle.setFile(resolvedFile);
+                report.item("ingest", resolvedFile.getName(), start, resolvedFile.length(), stored);
             } catch (Exception e) {
                 throw new MojoExecutionException(e.getMessage());
+            } finally {
+                report.phase("ingest", start);
             }
         }
         return resolvedFile;
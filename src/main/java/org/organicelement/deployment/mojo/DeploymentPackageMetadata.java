@@ -5,7 +5,11 @@ import java.net.URL;
 import java.util.ArrayList;
 import java.util.List;
 
+import org.organicelement.deployment.model.ConflictPolicy;
 import org.organicelement.deployment.model.DeploymentPackage;
+import org.organicelement.deployment.mojo.transform.BundleTransformer;
+import org.organicelement.deployment.mojo.transform.NativeCodeTransformer;
+import org.organicelement.deployment.mojo.transform.StripTransformer;
 
 /**
  * <p>
@@ -35,6 +39,56 @@ public class DeploymentPackageMetadata {
      */
     private List<Header> headerEntries = null;
 
+    /**
+     * The transformers applied to every bundle, after the headers.
+     */
+    private List<BundleTransformer> transformers = null;
+
+    /**
+     * Removes the entries not needed at runtime from every bundle, disabled
+     * when not configured.
+     */
+    private StripTransformer strip;
+
+    /**
+     * Keeps only the native libraries of this platform in the bundles,
+     * all are kept when not configured.
+     */
+    private NativeCodeTransformer targetPlatform;
+
+    /**
+     * The bundles already installed on the devices, not packaged.
+     */
+    private BaseImage baseImage;
+
+    /**
+     * Adds the packages referred by the classes of every bundle to its
+     * imports, unless the bundle disables it.
+     */
+    private boolean analyzeImports;
+
+    /**
+     * Checks that the imports of the bundles are exported by the package or
+     * by its base image.
+     */
+    private boolean checkResolution;
+
+    /**
+     * Reports the packages split across bundles and the duplicate classes.
+     */
+    private boolean detectSplitPackages;
+
+    /**
+     * The classifier used to attach this package to the project, only
+     * meaningful for additional package variants.
+     */
+    private String classifier;
+
+    /**
+     * Overrides the mojo-wide dependency inclusion flag when set.
+     */
+    private Boolean includeDependencies;
+
     /**
      * A constructor which initializes an instance of a
      * {@link DeploymentPackageMetadata}.
@@ -43,6 +97,7 @@ public class DeploymentPackageMetadata {
         resources = new ArrayList<Resource>();
         deploymentPackage = new DeploymentPackage();
         headerEntries = new ArrayList<Header>();
+        transformers = new ArrayList<BundleTransformer>();
     }
 
     /**
@@ -210,6 +265,20 @@ public class DeploymentPackageMetadata {
         deploymentPackage.setFixPackage(fixPack);
     }
 
+    /**
+     * @return the conflict policy
+     */
+    public final ConflictPolicy getConflictPolicy() {
+        return deploymentPackage.getConflictPolicy();
+    }
+
+    /**
+     * @param conflictPolicy the conflict policy to set
+     */
+    public final void setConflictPolicy(final ConflictPolicy conflictPolicy) {
+        deploymentPackage.setConflictPolicy(conflictPolicy);
+    }
+
     /**
      * @return the resources
      */
@@ -240,6 +309,104 @@ public class DeploymentPackageMetadata {
         this.headerEntries = headerEntries;
     }
 
+    /**
+     * @return the transformers
+     */
+    public final List<BundleTransformer> getTransformers() {
+        return transformers;
+    }
+
+    /**
+     * @param transformers the transformers to set
+     */
+    public final void setTransformers(final List<BundleTransformer> transformers) {
+        this.transformers = transformers;
+    }
+
+    /**
+     * @return the strip configuration, <code>null</code> if bundles are not stripped
+     */
+    public final StripTransformer getStrip() {
+        return strip;
+    }
+
+    /**
+     * @param strip the strip configuration to set
+     */
+    public final void setStrip(final StripTransformer strip) {
+        this.strip = strip;
+    }
+
+    /**
+     * @return the target platform, <code>null</code> if native libraries are not filtered
+     */
+    public final NativeCodeTransformer getTargetPlatform() {
+        return targetPlatform;
+    }
+
+    /**
+     * @param targetPlatform the target platform to set
+     */
+    public final void setTargetPlatform(final NativeCodeTransformer targetPlatform) {
+        this.targetPlatform = targetPlatform;
+    }
+
+    /**
+     * @return the base image, <code>null</code> if every bundle is packaged
+     */
+    public final BaseImage getBaseImage() {
+        return baseImage;
+    }
+
+    /**
+     * @param baseImage the base image to set
+     */
+    public final void setBaseImage(final BaseImage baseImage) {
+        this.baseImage = baseImage;
+    }
+
+    /**
+     * @return <code>true</code> if the imports of the bundles are computed
+     */
+    public final boolean isAnalyzeImports() {
+        return analyzeImports;
+    }
+
+    /**
+     * @param analyzeImports the import analysis flag to set
+     */
+    public final void setAnalyzeImports(final boolean analyzeImports) {
+        this.analyzeImports = analyzeImports;
+    }
+
+    /**
+     * @return the resolution check flag
+     */
+    public final boolean isCheckResolution() {
+        return checkResolution;
+    }
+
+    /**
+     * @param checkResolution the resolution check flag to set
+     */
+    public final void setCheckResolution(final boolean checkResolution) {
+        this.checkResolution = checkResolution;
+    }
+
+    /**
+     * @return the split package detection flag
+     */
+    public final boolean isDetectSplitPackages() {
+        return detectSplitPackages;
+    }
+
+    /**
+     * @param detectSplitPackages the split package detection flag to set
+     */
+    public final void setDetectSplitPackages(final boolean detectSplitPackages) {
+        this.detectSplitPackages = detectSplitPackages;
+    }
+
     /**
      * @return the symbolicName
      */
@@ -294,6 +461,35 @@ public class DeploymentPackageMetadata {
         return list;
     }
 
+    /**
+     * @return the classifier
+     */
+    public final String getClassifier() {
+        return classifier;
+    }
+
+    /**
+     * @param classifier the classifier to set
+     */
+    public final void setClassifier(final String classifier) {
+        this.classifier = classifier;
+    }
+
+    /**
+     * @return the dependency inclusion flag, <code>null</code> if inherited
+     *         from the mojo configuration
+     */
+    public final Boolean getIncludeDependencies() {
+        return includeDependencies;
+    }
+
+    /**
+     * @param include the dependency inclusion flag to set
+     */
+    public final void setIncludeDependencies(final Boolean include) {
+        includeDependencies = include;
+    }
+
     public DeploymentPackage getDeploymentPackage() {
         return deploymentPackage;
     }
@@ -17,15 +17,31 @@ import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
 import org.apache.maven.plugins.annotations.ResolutionScope;
 import org.apache.maven.project.MavenProject;
+import org.apache.maven.project.MavenProjectHelper;
 import org.codehaus.plexus.archiver.manager.ArchiverManager;
 import org.organicelement.deployment.model.CheckingException;
 import org.organicelement.deployment.model.DeploymentPackage;
+import org.organicelement.deployment.model.utils.BundleMetadata;
+import org.organicelement.deployment.model.utils.ClassSpace;
+import org.organicelement.deployment.model.utils.Store;
+import org.organicelement.deployment.mojo.util.ResolutionCache;
 
 import java.io.File;
 import java.io.IOException;
 import java.net.URL;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * Create an OSGi deployment package from Maven project.
@@ -103,6 +119,14 @@ public class DeploymentPackageMojo extends AbstractMojo {
 	@Parameter(property="remoteRepositories", required = true)
 	private List<ArtifactRepository> remoteRepositories;
 
+	/**
+	 * The projects of the current reactor. Artifacts attached by sibling modules in the current session are taken
+	 * from their build directories instead of the repositories.
+	 * 
+	 */
+	@Parameter(defaultValue = "${reactorProjects}", readonly = true)
+	private List<MavenProject> reactorProjects;
+
 	/**
 	 * Flag that indicates if the manifest of the resulting deployment-package should contain extra data like
 	 * "Created-By, Creation-Date, ...".
@@ -119,6 +143,52 @@ public class DeploymentPackageMojo extends AbstractMojo {
 	@Parameter(property="includeDependencies")
 	private boolean includeDependencies = true;
 
+	/**
+	 * Additional deployment packages built from the same project. Artifacts are resolved and ingested once for all of
+	 * them, then the packages are assembled concurrently. Each variant must define a classifier and is attached to the
+	 * project with it.
+	 * 
+	 */
+	@Parameter
+	private List<DeploymentPackageMetadata> variants;
+
+	/**
+	 * The maximum number of threads used to inject the bundle headers and to assemble the deployment packages.
+	 * 
+	 */
+	@Parameter(property = "dp.threads")
+	private int threads = Runtime.getRuntime().availableProcessors();
+
+	/**
+	 * Flag that indicates if resolved artifacts are recorded in a persistent cache. Release artifacts found in the cache
+	 * are not resolved again as long as their file is unchanged.
+	 * 
+	 */
+	@Parameter(property = "dp.useResolutionCache")
+	private boolean useResolutionCache = true;
+
+	/**
+	 * The persistent resolution cache file. Defaults to a file in the local repository.
+	 * 
+	 */
+	@Parameter(property = "dp.resolutionCache")
+	private File resolutionCacheFile;
+
+	/**
+	 * How long, in seconds, a cached snapshot artifact is served without asking the resolver again. Expired entries
+	 * are still used when the resolver fails, e.g. offline.
+	 * 
+	 */
+	@Parameter(property = "dp.snapshotTtl")
+	private long snapshotTtl = 0;
+
+	/**
+	 * The file receiving the timing breakdown of the build.
+	 * 
+	 */
+	@Parameter(property = "dp.reportFile", defaultValue = "${project.build.directory}/dp-build-report.json")
+	private File reportFile;
+
 	@Component
 	private ArtifactFactory artifactFactory;
 
@@ -131,13 +201,46 @@ public class DeploymentPackageMojo extends AbstractMojo {
 	@Component
 	private ArchiverManager archiverManager;
 
+	@Component
+	private MavenProjectHelper projectHelper;
+
+	/**
+	 * Artifacts already resolved during this execution.
+	 */
+	private final Map<String, File> resolvedArtifacts = new ConcurrentHashMap<String, File>();
+
+	/**
+	 * The main deployment package followed by the variants, once the execution started.
+	 */
+	private List<DeploymentPackageMetadata> definitions;
+
+	/**
+	 * The persistent resolution cache, opened on first use.
+	 */
+	private ResolutionCache resolutionCache;
+
+	/**
+	 * Project dependencies indexed by <code>groupId:artifactId(:classifier)</code>, built on first use.
+	 */
+	private Map<String, Dependency> dependencyIndex;
+
+	/**
+	 * Reactor projects indexed by <code>groupId:artifactId</code>, built on first use.
+	 */
+	private Map<String, MavenProject> reactorIndex;
+
+	/**
+	 * Timings of the current execution.
+	 */
+	private BuildReport report = new BuildReport();
+
 	/**
 	 * This method will be called by the Maven framework in order to execute this plugin.
 	 * 
 	 * @throws MojoExecutionException id any error occures
 	 * @throws MojoFailureException id any error occures
 	 */
-	public final void execute() throws MojoExecutionException, MojoFailureException {
+	public void execute() throws MojoExecutionException, MojoFailureException {
 
 		// First, check if we support such type of packaging.
 		final Artifact artifact = getProject().getArtifact();
@@ -154,61 +257,396 @@ public class DeploymentPackageMojo extends AbstractMojo {
 			throw new MojoExecutionException("No deployment package described");
 		}
 
-		// add project dependencies
-		if (includeDependencies)
-			addDependencies(deploymentPackageInfo);
+		report = new BuildReport();
+		dependencyIndex = null;
+		reactorIndex = null;
+		resolutionCache = null;
+		definitions = getDefinitions();
+
+		for (DeploymentPackageMetadata dpInfo : definitions) {
+			// add project dependencies
+			Boolean include = dpInfo.getIncludeDependencies();
+			if (include != null ? include.booleanValue() : includeDependencies) {
+				long start = report.now();
+				addDependencies(dpInfo);
+				report.phase("addDependencies", start);
+			}
+
+			// add inherited headers and transformers
+			addHeaders(dpInfo);
+
+			// Populate...
+			long start = report.now();
+			try {
+				populate(dpInfo.getDeploymentPackage(), dpInfo);
+			} catch (IOException e1) {
+				throw new MojoExecutionException("Cannot analyze the artifact : " + e1.getMessage());
+			} finally {
+				report.phase("populate", start);
+			}
+		}
+
+		// Resolve and ingest every artifact once, whatever the number of packages sharing it.
+		long start = report.now();
+		for (DeploymentPackageMetadata dpInfo : definitions) {
+			for (BundleResource br : dpInfo.getBundleResources()) {
+				br.setMojo(this);
+				br.getResolvedFile();
+			}
+		}
+		report.phase("resolve", start);
+
+		// Drop the bundles the devices already have, before transforming them.
+		excludeBaseImage(definitions);
+
+		// Inject the headers, the slowest part when they apply to every bundle.
+		prepare(definitions);
+
+		// Assemble the packages.
+		final Map<DeploymentPackageMetadata, File> files = assemble(definitions);
+
+		// // workaround for MNG-1682: force maven to install artifact using the
+		// // "jar" handler
+		final Artifact mainArtifact = getProject().getArtifact();
+		// mainArtifact.setArtifactHandler(getArtifactHandlerManager()
+		// .getArtifactHandler("jar"));
+		mainArtifact.setFile(files.get(deploymentPackageInfo));
+
+		for (DeploymentPackageMetadata dpInfo : definitions) {
+			if (dpInfo != deploymentPackageInfo) {
+				getProjectHelper().attachArtifact(getProject(), mainArtifact.getType(), dpInfo.getClassifier(),
+				      files.get(dpInfo));
+			}
+		}
+
+		report.finish();
+		report.log(getLogger());
+		if (reportFile != null) {
+			try {
+				report.write(reportFile);
+			} catch (IOException e) {
+				getLogger().warn("Cannot write the build report " + reportFile + " : " + e.getMessage());
+			}
+		}
+	}
+
+	/**
+	 * @return the packages built by the last execution, <code>null</code> if nothing was built
+	 */
+	final List<DeploymentPackageMetadata> getBuiltDefinitions() {
+		return definitions;
+	}
 
-		// add inherited headers
-		addHeaders(deploymentPackageInfo);
+	/**
+	 * @return the main deployment package followed by the configured variants
+	 * @throws MojoExecutionException if a variant has no or a duplicated classifier
+	 */
+	private List<DeploymentPackageMetadata> getDefinitions() throws MojoExecutionException {
+		final List<DeploymentPackageMetadata> list = new ArrayList<DeploymentPackageMetadata>();
+		list.add(getDeploymentPackageInfo());
+		if (variants != null) {
+			final Set<String> classifiers = new HashSet<String>();
+			for (DeploymentPackageMetadata variant : variants) {
+				String classifier = variant.getClassifier();
+				if (classifier == null || classifier.trim().length() == 0) {
+					throw new MojoExecutionException("Each deployment package variant must define a classifier");
+				}
+				if (!classifiers.add(classifier)) {
+					throw new MojoExecutionException("Duplicated deployment package classifier : " + classifier);
+				}
+				list.add(variant);
+			}
+		}
+		return list;
+	}
 
-		DeploymentPackage currentPackage = deploymentPackageInfo.getDeploymentPackage();
+	/**
+	 * Resolves, checks and builds every package, concurrently when several packages are defined.
+	 * 
+	 * @param definitions the packages to build
+	 * @return the created file of each package
+	 * @throws MojoExecutionException if a package cannot be built
+	 */
+	private Map<DeploymentPackageMetadata, File> assemble(final List<DeploymentPackageMetadata> definitions)
+	      throws MojoExecutionException {
+		final Map<DeploymentPackageMetadata, File> files = new HashMap<DeploymentPackageMetadata, File>();
+		if (definitions.size() == 1 || threads <= 1) {
+			for (DeploymentPackageMetadata dpInfo : definitions) {
+				files.put(dpInfo, assemble(dpInfo));
+			}
+			return files;
+		}
 
-		// Populate...
+		final ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, definitions.size()));
 		try {
-			populate(currentPackage, deploymentPackageInfo);
-		} catch (IOException e1) {
-			throw new MojoExecutionException("Cannot analyze the artifact : " + e1.getMessage());
+			final List<Future<File>> futures = new ArrayList<Future<File>>();
+			for (final DeploymentPackageMetadata dpInfo : definitions) {
+				futures.add(executor.submit(new Callable<File>() {
+
+					public File call() throws Exception {
+						return assemble(dpInfo);
+					}
+				}));
+			}
+
+			final StringBuilder failures = new StringBuilder();
+			for (int i = 0; i < definitions.size(); i++) {
+				try {
+					files.put(definitions.get(i), futures.get(i).get());
+				} catch (ExecutionException e) {
+					failures.append("\n  ").append(getFileName(definitions.get(i))).append(" : ")
+					      .append(e.getCause().getMessage());
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new MojoExecutionException("Interrupted while building the deployment packages");
+				}
+			}
+			if (failures.length() > 0) {
+				throw new MojoExecutionException("Some deployment packages cannot be built :" + failures);
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+		return files;
+	}
+
+	/**
+	 * Prepares the bundles of all packages, concurrently when several threads
+	 * are allowed. Failures are collected and reported per bundle.
+	 * 
+	 * @param definitions the packages to prepare
+	 * @throws MojoExecutionException if some bundles cannot be prepared
+	 */
+	private void prepare(final List<DeploymentPackageMetadata> definitions) throws MojoExecutionException {
+		final List<BundleResource> bundles = new ArrayList<BundleResource>();
+		for (DeploymentPackageMetadata dpInfo : definitions) {
+			bundles.addAll(dpInfo.getBundleResources());
 		}
 
+		final StringBuilder failures = new StringBuilder();
+		if (bundles.size() <= 1 || threads <= 1) {
+			for (BundleResource br : bundles) {
+				try {
+					br.prepare();
+				} catch (MojoExecutionException e) {
+					appendFailure(failures, br, e);
+				}
+			}
+		} else {
+			final ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, bundles.size()));
+			try {
+				final List<Future<Object>> futures = new ArrayList<Future<Object>>();
+				for (final BundleResource br : bundles) {
+					futures.add(executor.submit(new Callable<Object>() {
+
+						public Object call() throws Exception {
+							br.prepare();
+							return null;
+						}
+					}));
+				}
+
+				for (int i = 0; i < bundles.size(); i++) {
+					try {
+						futures.get(i).get();
+					} catch (ExecutionException e) {
+						appendFailure(failures, bundles.get(i), e.getCause());
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+						throw new MojoExecutionException("Interrupted while preparing the bundles");
+					}
+				}
+			} finally {
+				executor.shutdownNow();
+			}
+		}
+		if (failures.length() > 0) {
+			throw new MojoExecutionException("Some bundles cannot be prepared :" + failures);
+		}
+
+		long removed = 0;
+		int stripped = 0;
+		for (BundleResource br : bundles) {
+			if (br.getRemovedBytes() > 0) {
+				removed += br.getRemovedBytes();
+				stripped++;
+			}
+		}
+		if (stripped > 0) {
+			getLogger().info("Removed " + removed + " bytes from " + stripped + " bundles");
+		}
+	}
+
+	/**
+	 * Removes from each package the bundles provided by its base image, if
+	 * any, and logs what was skipped.
+	 * 
+	 * @param definitions the packages whose bundles are resolved
+	 * @throws MojoExecutionException if a bundle or the base image cannot be read
+	 */
+	private void excludeBaseImage(final List<DeploymentPackageMetadata> definitions) throws MojoExecutionException {
+		for (DeploymentPackageMetadata dpInfo : definitions) {
+			BaseImage baseImage = dpInfo.getBaseImage();
+			if (baseImage == null) {
+				continue;
+			}
+			long start = report.now();
+			long saved = 0;
+			List<String> skipped = new ArrayList<String>();
+			for (BundleResource br : dpInfo.getBundleResources()) {
+				File file = br.getResolvedFile();
+				BundleMetadata metadata;
+				try {
+					metadata = Store.STORE.getMetadata(file);
+				} catch (IOException e) {
+					throw new MojoExecutionException("Cannot read the bundle " + file + " : " + e.getMessage());
+				}
+				if (metadata.getSymbolicName() != null
+				      && baseImage.provides(metadata.getSymbolicName(), metadata.getVersion())) {
+					dpInfo.getResources().remove(br);
+					baseImage.addExports(metadata);
+					saved += file.length();
+					skipped.add(metadata.getSymbolicName() + " " + metadata.getVersion() + " (" + file.length()
+					      + " bytes)");
+					report.item("baseImage", file.getName(), start, file.length(), false);
+				}
+			}
+			report.phase("baseImage", start);
+			if (!skipped.isEmpty()) {
+				getLogger().info(getFileName(dpInfo) + " : skipped " + skipped.size()
+				      + " bundles provided by the base image, " + saved + " bytes saved");
+				for (String bundle : skipped) {
+					getLogger().info("  " + bundle);
+				}
+			}
+		}
+	}
+
+	private static void appendFailure(StringBuilder failures, BundleResource br, Throwable e) {
+		failures.append("\n  ").append(br.getGroupId()).append(":").append(br.getArtifactId()).append(" : ")
+		      .append(e.getMessage());
+	}
+
+	/**
+	 * Resolves, checks and builds one package.
+	 * 
+	 * @param dpInfo the package to build
+	 * @return the created file
+	 * @throws MojoExecutionException if the package cannot be built
+	 */
+	private File assemble(DeploymentPackageMetadata dpInfo) throws MojoExecutionException {
+		DeploymentPackage currentPackage = dpInfo.getDeploymentPackage();
+
 		// Resolve all resources.
-		for (BundleResource br : deploymentPackageInfo.getBundleResources()) {
+		for (BundleResource br : dpInfo.getBundleResources()) {
 			br.setMojo(this);
 			br.resolve(currentPackage, getBaseDir());
 		}
 
-		for (ProcessedResource pr : deploymentPackageInfo.getProcessedResources()) {
+		for (ProcessedResource pr : dpInfo.getProcessedResources()) {
 			pr.resolve(currentPackage, getBaseDir());
 		}
 
+		return build(dpInfo);
+	}
+
+	/**
+	 * Checks and builds one package whose resources are already resolved.
+	 * 
+	 * @param dpInfo the package to build
+	 * @return the created file
+	 * @throws MojoExecutionException if the package cannot be built
+	 */
+	final File build(DeploymentPackageMetadata dpInfo) throws MojoExecutionException {
+		DeploymentPackage currentPackage = dpInfo.getDeploymentPackage();
+
+		for (String conflict : currentPackage.getConflicts()) {
+			getLogger().warn(getFileName(dpInfo) + " : " + conflict);
+		}
+
 		// Check...
+		long start = report.now();
 		try {
-			currentPackage.check();
+			currentPackage.check(threads);
 		} catch (CheckingException e) {
 			throw new MojoExecutionException("The deployment package is inconsistent : " + e.getMessage());
+		} finally {
+			report.phase("check", start);
+		}
+
+		if (dpInfo.isCheckResolution()) {
+			start = report.now();
+			try {
+				currentPackage.checkResolution(dpInfo.getBaseImage() == null ? null : dpInfo.getBaseImage()
+				      .getExports());
+			} catch (CheckingException e) {
+				throw new MojoExecutionException("The deployment package does not resolve : " + e.getMessage());
+			} finally {
+				report.phase("resolution", start);
+			}
+		}
+
+		if (dpInfo.isDetectSplitPackages()) {
+			start = report.now();
+			try {
+				logSplitPackages(dpInfo, currentPackage.getClassSpace());
+			} catch (IOException e) {
+				throw new MojoExecutionException("Cannot analyze the bundle classes : " + e.getMessage());
+			} catch (CheckingException e) {
+				throw new MojoExecutionException("Cannot analyze the bundle classes : " + e.getMessage());
+			} finally {
+				report.phase("classSpace", start);
+			}
 		}
 
 		// Now, handle file creation...
-		String finalName = getProject().getBuild().getFinalName() + DP_FILE_EXTENSION;
-		final File file = new File(getBuildDirectory(), finalName);
+		final File file = new File(getBuildDirectory(), getFileName(dpInfo));
 
 		file.getParentFile().mkdirs();
 
-		// // workaround for MNG-1682: force maven to install artifact using the
-		// // "jar" handler
-		final Artifact mainArtifact = getProject().getArtifact();
-		// mainArtifact.setArtifactHandler(getArtifactHandlerManager()
-		// .getArtifactHandler("jar"));
-		mainArtifact.setFile(file);
-
 		// Build...
+		start = report.now();
 		try {
-			getLogger().debug("Build the deployment package");
+			getLogger().debug("Build the deployment package " + file.getName());
 			currentPackage.build(file);
 			getLogger().debug("Deployment package built");
 		} catch (Exception e) {
 			throw new MojoExecutionException("The deployment package cannot be built : " + e.getMessage());
+		} finally {
+			report.phase("build", start);
+		}
+		report.item("build", file.getName(), start, file.length(), false);
+		return file;
+	}
+
+	/**
+	 * Warns about each package split across bundles, with the number of
+	 * classes contained by several bundles.
+	 * 
+	 * @param dpInfo the analyzed package
+	 * @param space the class space of its bundles
+	 */
+	private void logSplitPackages(DeploymentPackageMetadata dpInfo, ClassSpace space) {
+		Map<String, Integer> duplicates = new HashMap<String, Integer>();
+		for (String entry : space.getDuplicateClasses().keySet()) {
+			int slash = entry.lastIndexOf('/');
+			String pkg = slash == -1 ? "" : entry.substring(0, slash).replace('/', '.');
+			Integer count = duplicates.get(pkg);
+			duplicates.put(pkg, count == null ? 1 : count + 1);
+		}
+		for (Map.Entry<String, Set<String>> split : space.getSplitPackages().entrySet()) {
+			Integer count = duplicates.get(split.getKey());
+			getLogger().warn(getFileName(dpInfo) + " : package " + split.getKey() + " is split across "
+			      + split.getValue() + ", " + (count == null ? 0 : count) + " duplicate classes");
 		}
+	}
 
+	private String getFileName(DeploymentPackageMetadata dpInfo) {
+		String finalName = getProject().getBuild().getFinalName();
+		if (dpInfo.getClassifier() != null) {
+			finalName = finalName + "-" + dpInfo.getClassifier();
+		}
+		return finalName + DP_FILE_EXTENSION;
 	}
 
 	private void addHeaders(DeploymentPackageMetadata dpInfo) {
@@ -217,6 +655,19 @@ public class DeploymentPackageMojo extends AbstractMojo {
 			for (Header header : headers) {
 				bres.getHeaders().add(header.clone());
 			}
+			// Transformers are stateless, they are shared.
+			if (dpInfo.getTransformers() != null) {
+				bres.getTransformers().addAll(dpInfo.getTransformers());
+			}
+			if (dpInfo.getStrip() != null) {
+				bres.getTransformers().add(dpInfo.getStrip());
+			}
+			if (dpInfo.getTargetPlatform() != null) {
+				bres.getTransformers().add(dpInfo.getTargetPlatform());
+			}
+			if (bres.getAnalyzeImports() == null) {
+				bres.setAnalyzeImports(Boolean.valueOf(dpInfo.isAnalyzeImports()));
+			}
 		}
 	}
 
@@ -225,9 +676,19 @@ public class DeploymentPackageMojo extends AbstractMojo {
 	 * 
 	 * @param dpInfo current deployment package configuration
 	 */
-	private void addDependencies(DeploymentPackageMetadata dpInfo) {
+	void addDependencies(DeploymentPackageMetadata dpInfo) {
 		List dependencies = project.getDependencies();
 		if (dependencies != null) {
+			// Dependencies merge with the first resource declared with the same groupId and artifactId,
+			// whatever their classifiers.
+			final Map<String, BundleResource> defined = new HashMap<String, BundleResource>();
+			for (BundleResource bres : dpInfo.getBundleResources()) {
+				String key = getKey(bres.getGroupId(), bres.getArtifactId(), null);
+				if (!defined.containsKey(key)) {
+					defined.put(key, bres);
+				}
+			}
+
 			for (Object depObj : dependencies) {
 				if (!(depObj instanceof Dependency))
 					continue;
@@ -240,10 +701,12 @@ public class DeploymentPackageMojo extends AbstractMojo {
 				String artifactId = dep.getArtifactId();
 				String version = dep.getVersion();
 
-				BundleResource bres = getDefinedDPResource(groupId, artifactId, dpInfo);
+				String key = getKey(groupId, artifactId, null);
+				BundleResource bres = defined.get(key);
 				if (bres == null) {
 					bres = new BundleResource();
 					dpInfo.getResources().add(bres);
+					defined.put(key, bres);
 				}
 
 				bres.setGroupId(groupId);
@@ -254,14 +717,53 @@ public class DeploymentPackageMojo extends AbstractMojo {
 		}
 	}
 
-	private BundleResource getDefinedDPResource(String groupId, String artifactId, DeploymentPackageMetadata dpInfo) {
-		for (BundleResource bres : dpInfo.getBundleResources()) {
-			if (bres.getGroupId().equals(groupId) && bres.getArtifactId().equals(artifactId)) {
-				return bres;
+	/**
+	 * @param groupId the groupId
+	 * @param artifactId the artifactId
+	 * @param classifier the classifier, may be <code>null</code>
+	 * @return the <code>groupId:artifactId(:classifier)</code> index key
+	 */
+	static String getKey(String groupId, String artifactId, String classifier) {
+		if (classifier == null || classifier.length() == 0) {
+			return groupId + ":" + artifactId;
+		}
+		return groupId + ":" + artifactId + ":" + classifier;
+	}
+
+	/**
+	 * Looks up the version of a project dependency. The dependency index is built once per execution.
+	 * 
+	 * @param groupId the groupId of the dependency
+	 * @param artifactId the artifactId of the dependency
+	 * @param classifier the classifier of the dependency, may be <code>null</code>
+	 * @return the declared version, <code>null</code> if the project does not depend on the artifact
+	 */
+	synchronized String getDependencyVersion(String groupId, String artifactId, String classifier) {
+		if (dependencyIndex == null) {
+			dependencyIndex = new HashMap<String, Dependency>();
+			List dependencies = project.getDependencies();
+			if (dependencies != null) {
+				for (Object depObj : dependencies) {
+					if (!(depObj instanceof Dependency))
+						continue;
+
+					Dependency dep = (Dependency) depObj;
+					dependencyIndex.put(getKey(dep.getGroupId(), dep.getArtifactId(), null), dep);
+					if (dep.getClassifier() != null) {
+						dependencyIndex.put(getKey(dep.getGroupId(), dep.getArtifactId(), dep.getClassifier()), dep);
+					}
+				}
 			}
 		}
 
-		return null;
+		Dependency dep = null;
+		if (classifier != null) {
+			dep = dependencyIndex.get(getKey(groupId, artifactId, classifier));
+		}
+		if (dep == null) {
+			dep = dependencyIndex.get(getKey(groupId, artifactId, null));
+		}
+		return dep == null ? null : dep.getVersion();
 	}
 
 	private void populate(DeploymentPackage currentPackage, DeploymentPackageMetadata dpInfo) throws IOException {
@@ -471,6 +973,41 @@ public class DeploymentPackageMojo extends AbstractMojo {
 		return includeDependencies;
 	}
 
+	/**
+	 * @return the additional deployment package variants
+	 */
+	public final List<DeploymentPackageMetadata> getVariants() {
+		return variants;
+	}
+
+	/**
+	 * @return the maximum number of threads used to assemble the deployment packages
+	 */
+	public final int getThreads() {
+		return threads;
+	}
+
+	/**
+	 * @return the timings of the current execution
+	 */
+	public final BuildReport getReport() {
+		return report;
+	}
+
+	/**
+	 * @return the build report file
+	 */
+	public final File getReportFile() {
+		return reportFile;
+	}
+
+	/**
+	 * @return the project helper
+	 */
+	public final MavenProjectHelper getProjectHelper() {
+		return projectHelper;
+	}
+
 	/**
 	 * @param p_baseDir the baseDir to set
 	 */
@@ -490,6 +1027,7 @@ public class DeploymentPackageMojo extends AbstractMojo {
 	 */
 	public final void setProject(final MavenProject p_project) {
 		project = p_project;
+		dependencyIndex = null;
 	}
 
 	/**
@@ -576,6 +1114,167 @@ public class DeploymentPackageMojo extends AbstractMojo {
 		includeDependencies = p_includeDependencies;
 	}
 
+	/**
+	 * @param p_variants the deployment package variants to set
+	 */
+	public final void setVariants(final List<DeploymentPackageMetadata> p_variants) {
+		variants = p_variants;
+	}
+
+	/**
+	 * @param p_threads the maximum number of threads to set
+	 */
+	public final void setThreads(final int p_threads) {
+		threads = p_threads;
+	}
+
+	/**
+	 * @param p_reportFile the build report file to set
+	 */
+	public final void setReportFile(final File p_reportFile) {
+		reportFile = p_reportFile;
+	}
+
+	/**
+	 * @param p_projectHelper the projectHelper to set
+	 */
+	public final void setProjectHelper(final MavenProjectHelper p_projectHelper) {
+		projectHelper = p_projectHelper;
+	}
+
+	/**
+	 * @return the persistent resolution cache, <code>null</code> if disabled
+	 */
+	private synchronized ResolutionCache getResolutionCache() {
+		if (!useResolutionCache) {
+			return null;
+		}
+		if (resolutionCache == null) {
+			File cacheFile = resolutionCacheFile;
+			if (cacheFile == null) {
+				if (getLocalRepository() == null) {
+					return null;
+				}
+				cacheFile = new File(getLocalRepository().getBasedir(),
+				      ".cache/deployment-package-maven-plugin/resolved.idx");
+			}
+			resolutionCache = new ResolutionCache(cacheFile, snapshotTtl * 1000L);
+		}
+		return resolutionCache;
+	}
+
+	/**
+	 * @return <CODE>TRUE</CODE> if the persistent resolution cache is used. Default is <CODE>TRUE</CODE>.
+	 */
+	public final boolean isUseResolutionCache() {
+		return useResolutionCache;
+	}
+
+	/**
+	 * @param p_useResolutionCache the useResolutionCache flag to set
+	 */
+	public final void setUseResolutionCache(final boolean p_useResolutionCache) {
+		useResolutionCache = p_useResolutionCache;
+		resolutionCache = null;
+	}
+
+	/**
+	 * @return the persistent resolution cache file
+	 */
+	public final File getResolutionCacheFile() {
+		return resolutionCacheFile;
+	}
+
+	/**
+	 * @param p_resolutionCacheFile the resolution cache file to set
+	 */
+	public final void setResolutionCacheFile(final File p_resolutionCacheFile) {
+		resolutionCacheFile = p_resolutionCacheFile;
+		resolutionCache = null;
+	}
+
+	/**
+	 * @return the time to live of cached snapshot artifacts, in seconds
+	 */
+	public final long getSnapshotTtl() {
+		return snapshotTtl;
+	}
+
+	/**
+	 * @param p_snapshotTtl the time to live of cached snapshot artifacts to set, in seconds
+	 */
+	public final void setSnapshotTtl(final long p_snapshotTtl) {
+		snapshotTtl = p_snapshotTtl;
+		resolutionCache = null;
+	}
+
+	/**
+	 * @return the reactor projects
+	 */
+	public final List<MavenProject> getReactorProjects() {
+		return reactorProjects;
+	}
+
+	/**
+	 * @param p_reactorProjects the reactor projects to set
+	 */
+	public final void setReactorProjects(final List<MavenProject> p_reactorProjects) {
+		reactorProjects = p_reactorProjects;
+		reactorIndex = null;
+	}
+
+	/**
+	 * Looks for an artifact produced by a module of the current reactor.
+	 * 
+	 * @param groupId the groupId of the artifact
+	 * @param artifactId the artifactId of the artifact
+	 * @param version the version of the artifact, <code>null</code> to accept any
+	 * @param classifier the classifier of the artifact, may be <code>null</code>
+	 * @return the artifact file attached by the module in this session, <code>null</code> if no module of the
+	 *         reactor has attached it
+	 */
+	synchronized File getReactorArtifact(String groupId, String artifactId, String version, String classifier) {
+		if (reactorProjects == null) {
+			return null;
+		}
+		if (reactorIndex == null) {
+			reactorIndex = new HashMap<String, MavenProject>();
+			for (MavenProject p : reactorProjects) {
+				if (p != project) {
+					reactorIndex.put(getKey(p.getGroupId(), p.getArtifactId(), null), p);
+				}
+			}
+		}
+
+		MavenProject sibling = reactorIndex.get(getKey(groupId, artifactId, null));
+		if (sibling == null || (version != null && !version.equals(sibling.getVersion()))) {
+			return null;
+		}
+
+		File file = null;
+		if (classifier == null || classifier.length() == 0) {
+			if (sibling.getArtifact() != null) {
+				file = sibling.getArtifact().getFile();
+			}
+		} else {
+			for (Object attached : sibling.getAttachedArtifacts()) {
+				Artifact a = (Artifact) attached;
+				if (classifier.equals(a.getClassifier())) {
+					file = a.getFile();
+				}
+			}
+		}
+
+		// Not attached in this session: a jar left in the build directory may be stale, or still being written by
+		// another thread, so the artifact is resolved like any other.
+		if (file == null || !file.isFile()) {
+			getLogger().debug("The reactor module " + sibling.getId() + " has not attached " + groupId + ":"
+			      + artifactId + (classifier == null ? "" : ":" + classifier) + " yet, resolving it");
+			return null;
+		}
+		return file;
+	}
+
 	/**
 	 * This method resolves an artifact on all available repositories and returns the file handle to that artifact.
 	 * 
@@ -588,6 +1287,7 @@ public class DeploymentPackageMojo extends AbstractMojo {
 	 */
 	public final File resolveResource(final String groupId, final String artifactId, final String version,
 	      final String classifier) throws MojoExecutionException {
+		final long start = report.now();
 		try {
 
 			if (artifactId == null)
@@ -597,18 +1297,31 @@ public class DeploymentPackageMojo extends AbstractMojo {
 
 			String resolvedVersion = version;
 			if (version == null) {
-				List dependencies = project.getDependencies();
-				if (dependencies != null) {
-					for (Object depObj : dependencies) {
-						if (!(depObj instanceof Dependency))
-							continue;
+				resolvedVersion = getDependencyVersion(groupId, artifactId, classifier);
+			}
 
-						Dependency dep = (Dependency) depObj;
-						if (!groupId.equals(dep.getGroupId()) || !artifactId.equals(dep.getArtifactId()))
-							continue;
+			final String key = groupId + ":" + artifactId + ":" + resolvedVersion + ":" + classifier;
+			final File resolved = resolvedArtifacts.get(key);
+			if (resolved != null) {
+				report.item("resolve", key, start, resolved.length(), true);
+				return resolved;
+			}
 
-						resolvedVersion = dep.getVersion();
-					}
+			final File reactorFile = getReactorArtifact(groupId, artifactId, resolvedVersion, classifier);
+			if (reactorFile != null) {
+				getLogger().debug("Using reactor artifact " + reactorFile);
+				resolvedArtifacts.put(key, reactorFile);
+				report.item("resolve", key, start, reactorFile.length(), false);
+				return reactorFile;
+			}
+
+			final ResolutionCache cache = getResolutionCache();
+			if (cache != null) {
+				final File cached = cache.get(groupId, artifactId, resolvedVersion, classifier, false);
+				if (cached != null) {
+					resolvedArtifacts.put(key, cached);
+					report.item("resolve", key, start, cached.length(), true);
+					return cached;
 				}
 			}
 
@@ -621,8 +1334,27 @@ public class DeploymentPackageMojo extends AbstractMojo {
 				      classifier);
 			}
 
-			getArtifactResolver().resolve(artifact, getRemoteRepositories(), getLocalRepository());
+			try {
+				getArtifactResolver().resolve(artifact, getRemoteRepositories(), getLocalRepository());
+			} catch (Exception e) {
+				// Serve an expired snapshot rather than failing, e.g. when offline.
+				final File cached = cache == null ? null : cache.get(groupId, artifactId, resolvedVersion, classifier,
+				      true);
+				if (cached == null) {
+					throw e;
+				}
+				getLogger().warn("Cannot resolve " + key + ", using the previously resolved " + cached);
+				resolvedArtifacts.put(key, cached);
+				report.item("resolve", key, start, cached.length(), true);
+				return cached;
+			}
 			final File artifactFile = artifact.getFile();
+			resolvedArtifacts.put(key, artifactFile);
+			if (cache != null) {
+				cache.put(groupId, artifactId, resolvedVersion, classifier, artifactFile,
+				      Store.STORE.store(artifactFile).getSHA1());
+			}
+			report.item("resolve", key, start, artifactFile.length(), false);
 			return artifactFile;
 		} catch (final Exception e) {
 			// Wrap checked exception
@@ -0,0 +1,208 @@
+package org.organicelement.deployment.mojo;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.plugins.annotations.ResolutionScope;
+
+/**
+ * Builds the deployment packages, then keeps the resolved model in memory and
+ * watches the resolved bundle files and processed resources. When one of them
+ * changes, only the affected entries are ingested again and the packages
+ * containing them are rewritten.
+ * <p>
+ * The files are polled for a change of their modification time or length,
+ * which works on every supported Java version.
+ * </p>
+ *
+ */
+@Mojo( name = "watch", requiresDependencyResolution = ResolutionScope.RUNTIME,
+		threadSafe = true)
+public class DeploymentPackageWatchMojo extends DeploymentPackageMojo {
+
+	/**
+	 * Time, in milliseconds, to wait for further changes before rebuilding. Build tools usually write a file in
+	 * several steps.
+	 *
+	 */
+	@Parameter(property = "dp.watchDelay")
+	private long watchDelay = 200;
+
+	/**
+	 * Time, in milliseconds, between two checks of the watched files.
+	 *
+	 */
+	@Parameter(property = "dp.watchInterval")
+	private long watchInterval = 500;
+
+	/**
+	 * An entry of a deployment package backed by a watched file.
+	 */
+	private static final class Entry {
+
+		private final DeploymentPackageMetadata dpInfo;
+
+		private final Resource resource;
+
+		Entry(DeploymentPackageMetadata dpInfo, Resource resource) {
+			this.dpInfo = dpInfo;
+			this.resource = resource;
+		}
+	}
+
+	public void execute() throws MojoExecutionException, MojoFailureException {
+		super.execute();
+
+		final List<DeploymentPackageMetadata> definitions = getBuiltDefinitions();
+		if (definitions == null) {
+			return;
+		}
+
+		// Index the watched files.
+		final Map<File, List<Entry>> entries = new HashMap<File, List<Entry>>();
+		for (DeploymentPackageMetadata dpInfo : definitions) {
+			for (BundleResource br : dpInfo.getBundleResources()) {
+				index(entries, br.getResolvedFile(), new Entry(dpInfo, br));
+			}
+			for (ProcessedResource pr : dpInfo.getProcessedResources()) {
+				index(entries, pr.getFile(getBaseDir()), new Entry(dpInfo, pr));
+			}
+		}
+
+		final Map<File, long[]> stamps = new HashMap<File, long[]>();
+		for (File file : entries.keySet()) {
+			stamps.put(file, stamp(file));
+		}
+
+		getLogger().info("Watching " + entries.size() + " files, press Ctrl+C to stop");
+		try {
+			while (!Thread.currentThread().isInterrupted()) {
+				Thread.sleep(watchInterval);
+				final Set<File> changed = poll(stamps);
+				if (changed.isEmpty()) {
+					continue;
+				}
+
+				// Wait for the writer to be done.
+				Set<File> more;
+				do {
+					Thread.sleep(watchDelay);
+					more = poll(stamps);
+					changed.addAll(more);
+				} while (!more.isEmpty());
+
+				rebuild(changed, entries);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private static void index(Map<File, List<Entry>> entries, File file, Entry entry) {
+		File key = file.getAbsoluteFile();
+		List<Entry> list = entries.get(key);
+		if (list == null) {
+			list = new ArrayList<Entry>();
+			entries.put(key, list);
+		}
+		list.add(entry);
+	}
+
+	/**
+	 * @return the modification time and length of a file, zero for a missing file
+	 */
+	private static long[] stamp(File file) {
+		return new long[] { file.lastModified(), file.length() };
+	}
+
+	/**
+	 * Updates the stamps of the watched files.
+	 * @return the files whose stamp changed since the previous poll
+	 */
+	private static Set<File> poll(Map<File, long[]> stamps) {
+		final Set<File> changed = new LinkedHashSet<File>();
+		for (Map.Entry<File, long[]> entry : stamps.entrySet()) {
+			long[] stamp = stamp(entry.getKey());
+			if (!Arrays.equals(stamp, entry.getValue())) {
+				entry.setValue(stamp);
+				changed.add(entry.getKey());
+			}
+		}
+		return changed;
+	}
+
+	/**
+	 * Ingests the changed files again and rewrites the packages containing them.
+	 */
+	private void rebuild(Set<File> changed, Map<File, List<Entry>> entries) {
+		final long start = System.nanoTime();
+		final Map<DeploymentPackageMetadata, Boolean> affected = new LinkedHashMap<DeploymentPackageMetadata, Boolean>();
+		for (File file : changed) {
+			if (!file.isFile()) {
+				getLogger().warn(file + " was removed, keeping its previous content");
+				continue;
+			}
+			getLogger().info("Changed : " + file.getName());
+			for (Entry entry : entries.get(file)) {
+				try {
+					if (entry.resource instanceof BundleResource) {
+						((BundleResource) entry.resource).refresh(entry.dpInfo.getDeploymentPackage());
+					} else {
+						((ProcessedResource) entry.resource).refresh(getBaseDir());
+					}
+					affected.put(entry.dpInfo, Boolean.TRUE);
+				} catch (MojoExecutionException e) {
+					getLogger().error("Cannot ingest " + file + " : " + e.getMessage());
+				}
+			}
+		}
+
+		for (DeploymentPackageMetadata dpInfo : affected.keySet()) {
+			try {
+				File file = build(dpInfo);
+				getLogger().info("Rebuilt " + file.getName() + " in " + (System.nanoTime() - start) / 1000000L + " ms");
+			} catch (MojoExecutionException e) {
+				getLogger().error(e.getMessage());
+			}
+		}
+	}
+
+	/**
+	 * @return the time to wait for further changes before rebuilding, in milliseconds
+	 */
+	public final long getWatchDelay() {
+		return watchDelay;
+	}
+
+	/**
+	 * @param p_watchDelay the time to wait for further changes before rebuilding to set
+	 */
+	public final void setWatchDelay(final long p_watchDelay) {
+		watchDelay = p_watchDelay;
+	}
+
+	/**
+	 * @return the time between two checks of the watched files, in milliseconds
+	 */
+	public final long getWatchInterval() {
+		return watchInterval;
+	}
+
+	/**
+	 * @param p_watchInterval the time between two checks of the watched files to set
+	 */
+	public final void setWatchInterval(final long p_watchInterval) {
+		watchInterval = p_watchInterval;
+	}
+}
@@ -5,7 +5,6 @@ import java.io.IOException;
 import java.util.Enumeration;
 import java.util.HashSet;
 import java.util.Iterator;
-import java.util.Map;
 import java.util.Set;
 import java.util.jar.JarFile;
 import java.util.regex.Matcher;
@@ -14,7 +13,7 @@ import java.util.zip.ZipEntry;
 
 import org.apache.maven.artifact.Artifact;
 
-import aQute.bnd.osgi.Analyzer;
+import org.organicelement.deployment.model.utils.Store;
 
 /**
  * Maven to OSGi simple converter
@@ -56,31 +55,9 @@ public class Maven2OsgiConverter {
      */
     public String getBundleSymbolicName(Artifact artifact) throws IOException {
         if ((artifact.getFile() != null) && artifact.getFile().isFile()) {
-            Analyzer analyzer = new Analyzer();
-
-            JarFile jar = null;
-            try {
-                jar = new JarFile(artifact.getFile(), false);
-
-                if (jar.getManifest() != null) {
-                    String symbolicNameAttribute = jar.getManifest()
-                            .getMainAttributes().getValue(
-                                    "Bundle-SymbolicName");
-                    Map bundleSymbolicNameHeader = analyzer
-                            .parseHeader(symbolicNameAttribute);
-
-                    Iterator<String> it = bundleSymbolicNameHeader.keySet().iterator();
-                    if (it.hasNext()) {
-                        return (String) it.next();
-                    }
-                }
-            } finally {
-                if (jar != null) {
-                    try {
-                        jar.close();
-                    } catch (IOException e) {
-                    }
-                }
+            String symbolicName = Store.STORE.getMetadata(artifact.getFile()).getSymbolicName();
+            if (symbolicName != null && symbolicName.length() > 0) {
+                return symbolicName;
             }
         }
 
@@ -82,11 +82,11 @@ public class ProcessedResource implements Resource {
     }
 
     public void resolve(DeploymentPackage dp, File baseDir) throws MojoExecutionException {
-        File f = new File(baseDir, filePath);
+        File f = getFile(baseDir);
         String n = f.getName();
 
         try {
-            resource.setURL(f.toURI().toURL());
+            resource.setFile(f);
         } catch (Exception e) {
             throw new MojoExecutionException(e.getMessage());
         }
@@ -100,6 +100,28 @@ public class ProcessedResource implements Resource {
 
     }
 
+    /**
+     * Ingests the file again after it changed on disk. The resource keeps its
+     * place in the deployment package it was added to.
+     * @param baseDir the base directory of the project
+     * @throws MojoExecutionException if the file cannot be read
+     */
+    public void refresh(File baseDir) throws MojoExecutionException {
+        try {
+            resource.setFile(getFile(baseDir));
+        } catch (Exception e) {
+            throw new MojoExecutionException(e.getMessage());
+        }
+    }
+
+    /**
+     * @param baseDir the base directory of the project
+     * @return the file of the resource
+     */
+    public final File getFile(File baseDir) {
+        return new File(baseDir, filePath);
+    }
+
     public Object getResource() {
        return resource;
     }
@@ -0,0 +1,41 @@
+package org.organicelement.deployment.mojo.transform;
+
+import java.io.IOException;
+import java.util.jar.Manifest;
+
+/**
+ * A transformer leaving everything untouched, to be extended.
+ */
+public abstract class AbstractBundleTransformer implements BundleTransformer {
+
+    public BundleTransformer begin(Manifest manifest) {
+        return this;
+    }
+
+    public void transform(Manifest manifest) {
+        // Nothing to do.
+    }
+
+    public boolean accept(String name) {
+        return true;
+    }
+
+    public boolean isTransformed(String name) {
+        return false;
+    }
+
+    public byte[] transform(String name, byte[] data) throws IOException {
+        return data;
+    }
+
+    /**
+     * Appends a value to a key, prefixed with its length so that distinct
+     * sequences of values never give the same key.
+     * @param key the key being built
+     * @param value the value
+     * @return the key
+     */
+    protected static StringBuilder appendKey(StringBuilder key, String value) {
+        return key.append(value.length()).append(':').append(value);
+    }
+}
@@ -0,0 +1,351 @@
+package org.organicelement.deployment.mojo.transform;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Enumeration;
+import java.util.GregorianCalendar;
+import java.util.List;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+import java.util.regex.Pattern;
+import java.util.zip.ZipException;
+
+import org.organicelement.deployment.model.utils.BundleMetadata;
+import org.organicelement.deployment.model.utils.StreamUtils;
+import org.organicelement.deployment.model.utils.ZipDirectory;
+import org.organicelement.deployment.model.utils.ZipWriter;
+
+/**
+ * Applies a list of {@link BundleTransformer}s to a bundle in a single pass.
+ * <p>
+ * The bundle is first planned from its manifest and central directory only:
+ * the manifest goes through every transformer and every entry is either
+ * removed, copied verbatim or transformed. A bundle the plan leaves unchanged
+ * does not need to be written at all. Otherwise it is written once, the
+ * entries whose content is not transformed are copied without being inflated.
+ * </p>
+ * <p>
+ * Entries are never removed from a signed bundle. The transformed bundle
+ * only depends on the source bundle and the transformers, new entries take
+ * the modification time of the entries they replace.
+ * </p>
+ */
+public final class BundlePipeline {
+
+    private static final Pattern SIGNATURE = Pattern.compile("META-INF/[^/]+\\.(SF|RSA|DSA|EC)",
+            Pattern.CASE_INSENSITIVE);
+
+    /**
+     * The modification time of a new manifest, 1980-01-01 00:00 as for
+     * {@link ZipWriter}.
+     */
+    private static final long FIXED_TIME = new GregorianCalendar(1980, Calendar.JANUARY, 1).getTimeInMillis();
+
+    private final List<BundleTransformer> transformers;
+
+    /**
+     * @param transformers the transformers, applied in order
+     */
+    public BundlePipeline(List<BundleTransformer> transformers) {
+        this.transformers = transformers;
+    }
+
+    /**
+     * @return <code>true</code> if there is no transformer
+     */
+    public boolean isEmpty() {
+        return transformers.isEmpty();
+    }
+
+    /**
+     * @return a key identifying the transformers and their configuration
+     */
+    public String getKey() {
+        StringBuilder sb = new StringBuilder();
+        for (BundleTransformer transformer : transformers) {
+            AbstractBundleTransformer.appendKey(sb, transformer.getClass().getName());
+            AbstractBundleTransformer.appendKey(sb, transformer.getKey());
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Plans the transformation of a bundle, only its manifest is read.
+     * @param bundle the bundle
+     * @return the plan
+     * @throws IOException if the bundle cannot be read
+     */
+    public Plan plan(File bundle) throws IOException {
+        Manifest original = BundleMetadata.readManifest(bundle);
+        if (original == null) {
+            original = new Manifest();
+        }
+        List<BundleTransformer> active = new ArrayList<BundleTransformer>(transformers.size());
+        for (BundleTransformer transformer : transformers) {
+            active.add(transformer.begin(original));
+        }
+        Manifest manifest = new Manifest(original);
+        for (BundleTransformer transformer : active) {
+            transformer.transform(manifest);
+        }
+        Plan plan = new Plan(bundle, active, manifest.equals(original) ? null : manifest);
+
+        try {
+            ZipDirectory directory = ZipDirectory.read(bundle);
+            plan.directory = directory;
+            for (ZipDirectory.Entry entry : directory.getEntries()) {
+                plan.signed |= isSignature(entry.getName());
+            }
+            for (ZipDirectory.Entry entry : directory.getEntries()) {
+                plan(plan, entry.getName(), entry.getCompressedSize(), entry);
+            }
+        } catch (ZipException e) {
+            // e.g. ZIP64, planned and written through the JDK.
+            JarFile jar = new JarFile(bundle, false);
+            try {
+                for (Enumeration<JarEntry> e2 = jar.entries(); e2.hasMoreElements();) {
+                    plan.signed |= isSignature(e2.nextElement().getName());
+                }
+                for (Enumeration<JarEntry> e2 = jar.entries(); e2.hasMoreElements();) {
+                    JarEntry entry = e2.nextElement();
+                    plan(plan, entry.getName(), entry.getCompressedSize(), entry);
+                }
+            } finally {
+                jar.close();
+            }
+        }
+        return plan;
+    }
+
+    /**
+     * @return <code>true</code> for a signature file, e.g. META-INF/SIGNER.SF
+     */
+    private static boolean isSignature(String name) {
+        return SIGNATURE.matcher(name).matches();
+    }
+
+    private static void plan(Plan plan, String name, long compressedSize, Object entry) {
+        if (name.equalsIgnoreCase(JarFile.MANIFEST_NAME)) {
+            plan.manifestEntry = entry;
+            return;
+        }
+        for (BundleTransformer transformer : plan.transformers) {
+            if (!transformer.accept(name)) {
+                if (plan.signed) {
+                    // The remaining entries would no longer match the signature.
+                    plan.keptEntries++;
+                    break;
+                }
+                plan.removedEntries++;
+                plan.removedBytes += compressedSize;
+                return;
+            }
+        }
+        plan.entries.add(entry);
+        for (BundleTransformer transformer : plan.transformers) {
+            if (transformer.isTransformed(name)) {
+                plan.transformed++;
+                break;
+            }
+        }
+    }
+
+    /**
+     * The planned transformation of a bundle.
+     */
+    public static final class Plan {
+
+        private final File bundle;
+
+        /**
+         * The transformers of this bundle.
+         */
+        private final List<BundleTransformer> transformers;
+
+        /**
+         * The transformed manifest, <code>null</code> if unchanged.
+         */
+        private final Manifest manifest;
+
+        private final List<Object> entries = new ArrayList<Object>();
+
+        private ZipDirectory directory;
+
+        private Object manifestEntry;
+
+        private int transformed;
+
+        private int removedEntries;
+
+        private long removedBytes;
+
+        private boolean signed;
+
+        private int keptEntries;
+
+        private Plan(File bundle, List<BundleTransformer> transformers, Manifest manifest) {
+            this.bundle = bundle;
+            this.transformers = transformers;
+            this.manifest = manifest;
+        }
+
+        /**
+         * @return <code>false</code> if the transformed bundle would be
+         *         identical to the original one
+         */
+        public boolean isChanged() {
+            return manifest != null || transformed > 0 || removedEntries > 0;
+        }
+
+        /**
+         * @return the number of removed entries
+         */
+        public int getRemovedEntries() {
+            return removedEntries;
+        }
+
+        /**
+         * @return the compressed size of the removed entries
+         */
+        public long getRemovedBytes() {
+            return removedBytes;
+        }
+
+        /**
+         * Entries are never removed from a signed bundle.
+         * @return <code>true</code> if the bundle is signed
+         */
+        public boolean isSigned() {
+            return signed;
+        }
+
+        /**
+         * @return the number of entries a transformer rejected but that were
+         *         kept as the bundle is signed
+         */
+        public int getKeptEntries() {
+            return keptEntries;
+        }
+
+        /**
+         * Writes the transformed bundle.
+         * @param os the destination, not closed
+         * @throws IOException if the bundle cannot be transformed
+         */
+        public void write(OutputStream os) throws IOException {
+            if (directory == null) {
+                rewrite(os);
+                return;
+            }
+            RandomAccessFile raf = new RandomAccessFile(bundle, "r");
+            try {
+                OutputStream bos = new BufferedOutputStream(os, 65536);
+                ZipWriter writer = new ZipWriter(bos);
+                // The manifest comes first for streaming readers.
+                if (manifest != null) {
+                    writer.write(JarFile.MANIFEST_NAME, toBytes(manifest), (ZipDirectory.Entry) manifestEntry);
+                } else if (manifestEntry != null) {
+                    writer.copy(raf, (ZipDirectory.Entry) manifestEntry);
+                }
+                for (Object e : entries) {
+                    ZipDirectory.Entry entry = (ZipDirectory.Entry) e;
+                    byte[] data = transform(entry.getName(), null, raf, entry);
+                    if (data == null) {
+                        writer.copy(raf, entry);
+                    } else {
+                        writer.write(entry.getName(), data, entry);
+                    }
+                }
+                writer.finish();
+            } finally {
+                raf.close();
+            }
+        }
+
+        /**
+         * Runs the content transformers of an entry.
+         * @return the new content, <code>null</code> if the entry is not transformed
+         */
+        private byte[] transform(String name, JarFile jar, RandomAccessFile raf, Object entry) throws IOException {
+            byte[] data = null;
+            for (BundleTransformer transformer : transformers) {
+                if (transformer.isTransformed(name)) {
+                    if (data == null) {
+                        data = jar == null ? ZipDirectory.read(raf, (ZipDirectory.Entry) entry)
+                                : read(jar.getInputStream((JarEntry) entry));
+                    }
+                    data = transformer.transform(name, data);
+                }
+            }
+            return data;
+        }
+
+        private void rewrite(OutputStream os) throws IOException {
+            JarFile jar = new JarFile(bundle, false);
+            try {
+                JarOutputStream jos = new JarOutputStream(os);
+                JarEntry manifestCopy = new JarEntry(JarFile.MANIFEST_NAME);
+                manifestCopy.setTime(manifestEntry == null ? FIXED_TIME : ((JarEntry) manifestEntry).getTime());
+                jos.putNextEntry(manifestCopy);
+                if (manifest != null) {
+                    manifest.write(jos);
+                } else if (manifestEntry != null) {
+                    InputStream is = jar.getInputStream((JarEntry) manifestEntry);
+                    try {
+                        StreamUtils.copyStream(is, jos, false);
+                    } finally {
+                        is.close();
+                    }
+                }
+                jos.closeEntry();
+                for (Object e : entries) {
+                    JarEntry entry = (JarEntry) e;
+                    byte[] data = transform(entry.getName(), jar, null, entry);
+                    JarEntry copy = new JarEntry(entry.getName());
+                    copy.setTime(entry.getTime());
+                    jos.putNextEntry(copy);
+                    if (data == null) {
+                        InputStream is = jar.getInputStream(entry);
+                        try {
+                            StreamUtils.copyStream(is, jos, false);
+                        } finally {
+                            is.close();
+                        }
+                    } else {
+                        jos.write(data);
+                    }
+                    jos.closeEntry();
+                }
+                // The stream belongs to the caller.
+                jos.finish();
+            } finally {
+                jar.close();
+            }
+        }
+    }
+
+    private static byte[] toBytes(Manifest manifest) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        manifest.write(bos);
+        return bos.toByteArray();
+    }
+
+    private static byte[] read(InputStream is) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        try {
+            StreamUtils.copyStream(is, bos, false);
+        } finally {
+            is.close();
+        }
+        return bos.toByteArray();
+    }
+}
@@ -0,0 +1,68 @@
+package org.organicelement.deployment.mojo.transform;
+
+import java.io.IOException;
+import java.util.jar.Manifest;
+
+/**
+ * A transformation applied to the bundles of a deployment package. All the
+ * transformers of a bundle run in a single pass over its entries, see
+ * {@link BundlePipeline}.
+ * <p>
+ * Transformers are shared by the bundles of a package, which are transformed
+ * concurrently, they must be stateless. Per-bundle state belongs to the
+ * transformer returned by {@link #begin(Manifest)}. Custom transformers are configured
+ * with their implementation class:
+ * </p>
+ * <pre>
+ * &lt;transformers&gt;
+ *   &lt;transformer implementation="com.acme.MyTransformer"/&gt;
+ * &lt;/transformers&gt;
+ * </pre>
+ */
+public interface BundleTransformer {
+
+    /**
+     * The result of a bundle transformation is cached, the key must change
+     * whenever the transformation would produce a different result.
+     * @return a key identifying the transformation and its configuration
+     */
+    String getKey();
+
+    /**
+     * Called once per bundle, before any other method.
+     * @param manifest the original bundle manifest, not to be modified
+     * @return the transformer to apply to this bundle, stateless
+     *         transformers return themselves
+     */
+    BundleTransformer begin(Manifest manifest);
+
+    /**
+     * Transforms the bundle manifest, in place.
+     * @param manifest the manifest, never <code>null</code>
+     */
+    void transform(Manifest manifest);
+
+    /**
+     * @param name an entry name
+     * @return <code>false</code> to remove the entry from the bundle
+     */
+    boolean accept(String name);
+
+    /**
+     * Entries whose content is not transformed are copied verbatim, without
+     * being inflated.
+     * @param name an entry name
+     * @return <code>true</code> if {@link #transform(String, byte[])} must be
+     *         called for this entry
+     */
+    boolean isTransformed(String name);
+
+    /**
+     * Transforms the content of an entry.
+     * @param name the entry name
+     * @param data the uncompressed content
+     * @return the new content
+     * @throws IOException if the content cannot be transformed
+     */
+    byte[] transform(String name, byte[] data) throws IOException;
+}
@@ -0,0 +1,150 @@
+package org.organicelement.deployment.mojo.transform;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Removes bundle entries according to include and exclude patterns. Patterns
+ * use the Ant syntax: <code>*</code> matches within a directory,
+ * <code>**</code> across directories. An entry is kept if it matches an
+ * include pattern, or if there is none, and no exclude pattern.
+ */
+public class EntryFilterTransformer extends AbstractBundleTransformer {
+
+    private List<String> includes = new ArrayList<String>();
+
+    private List<String> excludes = new ArrayList<String>();
+
+    private volatile List<Pattern> includePatterns;
+
+    private List<Pattern> excludePatterns;
+
+    public String getKey() {
+        StringBuilder sb = new StringBuilder("filter");
+        appendKeys(sb, includes);
+        appendKeys(sb, excludes);
+        return sb.toString();
+    }
+
+    private static void appendKeys(StringBuilder key, List<String> patterns) {
+        key.append(patterns.size()).append(';');
+        for (String pattern : patterns) {
+            appendKey(key, pattern);
+        }
+    }
+
+    public boolean accept(String name) {
+        if (includePatterns == null) {
+            compile();
+        }
+        if (!includePatterns.isEmpty() && !matches(includePatterns, name)) {
+            return false;
+        }
+        return !matches(excludePatterns, name);
+    }
+
+    private synchronized void compile() {
+        List<Pattern> excluded = compile(excludes);
+        // Published by the volatile write below, accept() checks it first.
+        excludePatterns = excluded;
+        includePatterns = compile(includes);
+    }
+
+    static boolean matches(List<Pattern> patterns, String name) {
+        for (Pattern pattern : patterns) {
+            if (pattern.matcher(name).matches()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    static List<Pattern> compile(List<String> globs) {
+        return compile(globs, 0);
+    }
+
+    static List<Pattern> compile(List<String> globs, int flags) {
+        List<Pattern> patterns = new ArrayList<Pattern>(globs.size());
+        for (String glob : globs) {
+            patterns.add(toPattern(glob, flags));
+        }
+        return patterns;
+    }
+
+    /**
+     * @param glob an Ant pattern
+     * @return the equivalent regular expression
+     */
+    static Pattern toPattern(String glob) {
+        return toPattern(glob, 0);
+    }
+
+    /**
+     * @param glob an Ant pattern
+     * @param flags the {@link Pattern} flags
+     * @return the equivalent regular expression
+     */
+    static Pattern toPattern(String glob, int flags) {
+        String value = glob.trim();
+        if (value.endsWith("/")) {
+            // A directory and its content.
+            value = value + "**";
+        }
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '*') {
+                if (i + 1 < value.length() && value.charAt(i + 1) == '*') {
+                    i++;
+                    if (i + 1 < value.length() && value.charAt(i + 1) == '/') {
+                        // **/ also matches no directory at all.
+                        i++;
+                        sb.append("(.*/)?");
+                    } else {
+                        sb.append(".*");
+                    }
+                } else {
+                    sb.append("[^/]*");
+                }
+            } else if (c == '?') {
+                sb.append("[^/]");
+            } else if ("\\.[]{}()+-^$|".indexOf(c) != -1) {
+                sb.append('\\').append(c);
+            } else {
+                sb.append(c);
+            }
+        }
+        return Pattern.compile(sb.toString(), flags);
+    }
+
+    /**
+     * @return the include patterns
+     */
+    public final List<String> getIncludes() {
+        return includes;
+    }
+
+    /**
+     * @param includes the include patterns to set
+     */
+    public final void setIncludes(final List<String> includes) {
+        this.includes = includes;
+        includePatterns = null;
+    }
+
+    /**
+     * @return the exclude patterns
+     */
+    public final List<String> getExcludes() {
+        return excludes;
+    }
+
+    /**
+     * @param excludes the exclude patterns to set
+     */
+    public final void setExcludes(final List<String> excludes) {
+        this.excludes = excludes;
+        includePatterns = null;
+    }
+}
@@ -0,0 +1,50 @@
+package org.organicelement.deployment.mojo.transform;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.jar.Manifest;
+
+import org.organicelement.deployment.mojo.BundleHeader;
+import org.organicelement.deployment.mojo.util.ManifestBuilder;
+
+/**
+ * Adds headers to the bundle manifest, overriding existing values.
+ */
+public class HeaderTransformer extends AbstractBundleTransformer {
+
+    private final List<BundleHeader> headers;
+
+    private final String key;
+
+    /**
+     * @param headers the headers, later ones override earlier ones
+     */
+    public HeaderTransformer(List<BundleHeader> headers) {
+        this.headers = headers;
+
+        // Header names are case insensitive.
+        Map<String, BundleHeader> canonical = new TreeMap<String, BundleHeader>();
+        for (BundleHeader header : headers) {
+            canonical.put(header.getName().toLowerCase(Locale.ENGLISH), header);
+        }
+        StringBuilder sb = new StringBuilder("headers");
+        for (BundleHeader header : canonical.values()) {
+            appendKey(appendKey(sb, header.getName()), header.getValue());
+        }
+        key = sb.toString();
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public void transform(Manifest manifest) {
+        ManifestBuilder builder = new ManifestBuilder();
+        for (BundleHeader header : headers) {
+            builder.addHeader(header);
+        }
+        builder.build(manifest);
+    }
+}
@@ -0,0 +1,33 @@
+package org.organicelement.deployment.mojo.transform;
+
+import java.util.Set;
+import java.util.jar.Manifest;
+
+import org.organicelement.deployment.mojo.util.ManifestBuilder;
+
+/**
+ * Adds the packages referred by the bundle classes to its
+ * <code>Import-Package</code> header. Packages already imported keep their
+ * clause.
+ */
+public class ImportTransformer extends AbstractBundleTransformer {
+
+    private final Set<String> packages;
+
+    /**
+     * @param packages the referred packages, sorted
+     */
+    public ImportTransformer(Set<String> packages) {
+        this.packages = packages;
+    }
+
+    public String getKey() {
+        return "imports" + packages;
+    }
+
+    public void transform(Manifest manifest) {
+        ManifestBuilder builder = new ManifestBuilder();
+        builder.addReferredPackage(packages);
+        builder.build(manifest);
+    }
+}
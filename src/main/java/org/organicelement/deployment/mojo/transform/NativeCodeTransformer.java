@@ -0,0 +1,210 @@
+package org.organicelement.deployment.mojo.transform;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.jar.Manifest;
+
+import org.organicelement.deployment.model.Constants;
+import org.organicelement.deployment.model.utils.HeaderParser;
+
+/**
+ * Keeps only the native libraries of a target platform. The
+ * <code>Bundle-NativeCode</code> clauses that do not match the target
+ * operating system and processor are removed from the header, together with
+ * the libraries only they reference.
+ * <p>
+ * A clause without <code>osname</code>, respectively
+ * <code>processor</code>, matches any target. A bundle none of whose
+ * clauses matches is left untouched, so that the framework reports it.
+ * </p>
+ */
+public class NativeCodeTransformer extends AbstractBundleTransformer {
+
+    /**
+     * Processor aliases, from the OSGi core specification.
+     */
+    private static final Map<String, String> PROCESSORS = new HashMap<String, String>();
+
+    /**
+     * Operating system aliases, from the OSGi core specification.
+     */
+    private static final Map<String, String> OS_NAMES = new HashMap<String, String>();
+
+    static {
+        alias(PROCESSORS, "x86-64", new String[] { "amd64", "em64t", "x86_64" });
+        alias(PROCESSORS, "x86", new String[] { "pentium", "i386", "i486", "i586", "i686" });
+        alias(PROCESSORS, "aarch64", new String[] { "arm64" });
+        alias(PROCESSORS, "arm_le", new String[] { "arm", "armv7", "armv7l", "armv7hf", "armle" });
+        alias(PROCESSORS, "ppc64le", new String[] { "powerpc64le" });
+        alias(OS_NAMES, "macos", new String[] { "mac os", "mac os x", "macosx" });
+        alias(OS_NAMES, "win32", new String[] { "windows", "windows 7", "windows 8", "windows 10", "windows 11",
+            "windows server 2016", "windows server 2019", "windows server 2022" });
+    }
+
+    private String osname;
+
+    private String processor;
+
+    private static void alias(Map<String, String> aliases, String name, String[] others) {
+        aliases.put(name, name);
+        for (String other : others) {
+            aliases.put(other, name);
+        }
+    }
+
+    private static String canonical(Map<String, String> aliases, String value) {
+        String lower = value.trim().toLowerCase(Locale.ENGLISH);
+        String name = aliases.get(lower);
+        return name == null ? lower : name;
+    }
+
+    public String getKey() {
+        return "nativecode:" + (osname == null ? "" : canonical(OS_NAMES, osname)) + ":"
+                + (processor == null ? "" : canonical(PROCESSORS, processor));
+    }
+
+    public BundleTransformer begin(Manifest manifest) {
+        String header = manifest.getMainAttributes().getValue(Constants.BUNDLE_NATIVECODE);
+        if (header == null || (osname == null && processor == null)) {
+            return this;
+        }
+
+        List<String> kept = new ArrayList<String>();
+        Set<String> keptPaths = new HashSet<String>();
+        Set<String> droppedPaths = new HashSet<String>();
+        List<String> clauses = HeaderParser.split(header, ',');
+        for (String clause : clauses) {
+            if (clause.trim().equals("*")) {
+                kept.add(clause);
+                continue;
+            }
+            List<String> paths = new ArrayList<String>();
+            List<String> osnames = new ArrayList<String>();
+            List<String> processors = new ArrayList<String>();
+            for (String part : HeaderParser.split(clause, ';')) {
+                int eq = part.indexOf('=');
+                if (eq == -1) {
+                    paths.add(unquote(part));
+                    continue;
+                }
+                String name = part.substring(0, eq).trim();
+                String value = unquote(part.substring(eq + 1));
+                if (name.equalsIgnoreCase(Constants.BUNDLE_NATIVECODE_OSNAME)) {
+                    osnames.add(value);
+                } else if (name.equalsIgnoreCase(Constants.BUNDLE_NATIVECODE_PROCESSOR)) {
+                    processors.add(value);
+                }
+            }
+            if (matches(OS_NAMES, osname, osnames) && matches(PROCESSORS, processor, processors)) {
+                kept.add(clause);
+                keptPaths.addAll(paths);
+            } else {
+                droppedPaths.addAll(paths);
+            }
+        }
+        droppedPaths.removeAll(keptPaths);
+
+        boolean matching = false;
+        for (String clause : kept) {
+            if (!clause.trim().equals("*")) {
+                matching = true;
+            }
+        }
+        if (!matching || kept.size() == clauses.size()) {
+            return this;
+        }
+        return new Selection(join(kept), droppedPaths);
+    }
+
+    private static boolean matches(Map<String, String> aliases, String target, List<String> values) {
+        if (target == null || values.isEmpty()) {
+            return true;
+        }
+        String expected = canonical(aliases, target);
+        for (String value : values) {
+            if (canonical(aliases, value).equals(expected)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * The transformation of one bundle.
+     */
+    private static final class Selection extends AbstractBundleTransformer {
+
+        private final String header;
+
+        private final Set<String> dropped;
+
+        Selection(String header, Set<String> dropped) {
+            this.header = header;
+            this.dropped = dropped;
+        }
+
+        public String getKey() {
+            return header;
+        }
+
+        public void transform(Manifest manifest) {
+            manifest.getMainAttributes().putValue(Constants.BUNDLE_NATIVECODE, header);
+        }
+
+        public boolean accept(String name) {
+            return !dropped.contains(name);
+        }
+    }
+
+    private static String unquote(String value) {
+        String trimmed = value.trim();
+        if (trimmed.length() >= 2 && trimmed.startsWith("\"") && trimmed.endsWith("\"")) {
+            return trimmed.substring(1, trimmed.length() - 1);
+        }
+        return trimmed;
+    }
+
+    private static String join(List<String> clauses) {
+        StringBuilder sb = new StringBuilder();
+        for (String clause : clauses) {
+            if (sb.length() > 0) {
+                sb.append(',');
+            }
+            sb.append(clause.trim());
+        }
+        return sb.toString();
+    }
+
+    /**
+     * @return the target operating system, <code>null</code> for any
+     */
+    public final String getOsname() {
+        return osname;
+    }
+
+    /**
+     * @param osname the target operating system to set
+     */
+    public final void setOsname(final String osname) {
+        this.osname = osname;
+    }
+
+    /**
+     * @return the target processor, <code>null</code> for any
+     */
+    public final String getProcessor() {
+        return processor;
+    }
+
+    /**
+     * @param processor the target processor to set
+     */
+    public final void setProcessor(final String processor) {
+        this.processor = processor;
+    }
+}
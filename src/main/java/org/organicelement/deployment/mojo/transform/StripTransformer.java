@@ -0,0 +1,70 @@
+package org.organicelement.deployment.mojo.transform;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Removes the entries a bundle does not need at runtime: Maven metadata,
+ * sources and javadoc by default, plus the configured exclude patterns.
+ * <p>
+ * The manifest, the signature files, <code>OSGI-INF</code> and the service
+ * loader files are never removed, whatever the patterns and the case of
+ * their names. The pipeline removes no entry from a signed bundle, but still
+ * rewrites its manifest and applies the other transformers.
+ * </p>
+ */
+public class StripTransformer extends EntryFilterTransformer {
+
+    /**
+     * The entries removed unless default excludes are disabled.
+     */
+    public static final List<String> DEFAULT_EXCLUDES = Collections.unmodifiableList(Arrays.asList(new String[] {
+        "META-INF/maven/", "OSGI-OPT/", "**/*.java", "**/package.html", "**/doc-files/" }));
+
+    /**
+     * The entries that are never removed.
+     */
+    public static final List<String> PROTECTED = Collections.unmodifiableList(Arrays.asList(new String[] {
+        "META-INF/MANIFEST.MF", "META-INF/*.SF", "META-INF/*.RSA", "META-INF/*.DSA", "META-INF/*.EC",
+        "OSGI-INF/", "META-INF/services/" }));
+
+    private static final List<Pattern> DEFAULT_PATTERNS = compile(DEFAULT_EXCLUDES);
+
+    /**
+     * Matched whatever the case, as archives may be read on case insensitive
+     * file systems and signature files are looked up case insensitively.
+     */
+    private static final List<Pattern> PROTECTED_PATTERNS = compile(PROTECTED, Pattern.CASE_INSENSITIVE);
+
+    private boolean useDefaultExcludes = true;
+
+    public String getKey() {
+        return "strip" + (useDefaultExcludes ? DEFAULT_EXCLUDES : "") + super.getKey();
+    }
+
+    public boolean accept(String name) {
+        if (matches(PROTECTED_PATTERNS, name)) {
+            return true;
+        }
+        if (useDefaultExcludes && matches(DEFAULT_PATTERNS, name)) {
+            return false;
+        }
+        return super.accept(name);
+    }
+
+    /**
+     * @return <code>true</code> if the default excludes apply
+     */
+    public final boolean isUseDefaultExcludes() {
+        return useDefaultExcludes;
+    }
+
+    /**
+     * @param useDefaultExcludes the default excludes flag to set
+     */
+    public final void setUseDefaultExcludes(final boolean useDefaultExcludes) {
+        this.useDefaultExcludes = useDefaultExcludes;
+    }
+}
@@ -19,8 +19,6 @@
 package org.organicelement.deployment.mojo.util;
 
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -28,6 +26,8 @@ import java.util.TreeMap;
 import java.util.jar.Attributes;
 import java.util.jar.Manifest;
 
+import org.organicelement.deployment.model.utils.HeaderParser;
+
 /**
  * A {@code DefaultManifestBuilder} handles the knowledge of iPOJO Manifest building.
  * It is responsible to update a given Manifest with all gathered (additional)
@@ -102,49 +102,13 @@ public class DefaultManifestBuilder {
     }
 
     /**
-     * Standard OSGi header parser. This parser can handle the format
-     * <pre>
-     * clauses ::= clause ( ',' clause ) +
-     * clause ::= name ( ';' name ) (';' key '=' value )
-     * </pre>
-     * This is mapped to a Map { name => Map { attr|directive => value } }
+     * Standard OSGi header parser, see {@link HeaderParser#parse(String)}.
      *
      * @param value String to parse.
-     * @return parsed map.
+     * @return parsed map, in clause order.
      */
     protected Map<String, Map<String, String>> parseHeader(String value) {
-        if (value == null || value.trim().length() == 0) {
-            return new HashMap<String, Map<String, String>>();
-        }
-
-        Map<String, Map<String, String>> result = new HashMap<String, Map<String, String>>();
-        QuotedTokenizer qt = new QuotedTokenizer(value, ";=,");
-        char del;
-        do {
-            boolean hadAttribute = false;
-            Map<String, String> clause = new HashMap<String, String>();
-            List<String> aliases = new ArrayList<String>();
-            aliases.add(qt.nextToken());
-            del = qt.getSeparator();
-            while (del == ';') {
-                String adname = qt.nextToken();
-                if ((del = qt.getSeparator()) != '=') {
-                    if (hadAttribute) {
-                        throw new IllegalArgumentException("Header contains name field after attribute or directive: " + adname + " from " + value);
-                    }
-                    aliases.add(adname);
-                } else {
-                    String advalue = qt.nextToken();
-                    clause.put(adname, advalue);
-                    del = qt.getSeparator();
-                    hadAttribute = true;
-                }
-            }
-            for (Iterator<String> i = aliases.iterator(); i.hasNext();) {
-                result.put(i.next(), clause);
-            }
-        } while (del == ',');
-        return result;
+        return HeaderParser.parse(value);
     }
 
     /**
@@ -155,43 +119,6 @@ public class DefaultManifestBuilder {
      * @return the clauses
      */
     private String printClauses(Map<String, Map<String, String>> exports, String allowedDirectives) {
-        StringBuffer sb = new StringBuffer();
-        String del = "";
-
-        for (Iterator i = exports.entrySet().iterator(); i.hasNext();) {
-            Map.Entry entry = (Map.Entry) i.next();
-            String name = (String) entry.getKey();
-            Map map = (Map) entry.getValue();
-            sb.append(del);
-            sb.append(name);
-
-            for (Iterator j = map.entrySet().iterator(); j.hasNext();) {
-                Map.Entry entry2 = (Map.Entry) j.next();
-                String key = (String) entry2.getKey();
-
-                // Skip directives we do not recognize
-                if (key.endsWith(":") && allowedDirectives.indexOf(key) < 0) {
-                    continue;
-                }
-
-                String value = (String) entry2.getValue();
-                sb.append(";");
-                sb.append(key);
-                sb.append("=");
-                boolean dirty = value.indexOf(',') >= 0 || value.indexOf(';') >= 0;
-                if (dirty) {
-                    sb.append("\"");
-                }
-                sb.append(value);
-                if (dirty) {
-                    sb.append("\"");
-                }
-            }
-            del = ", ";
-        }
-        return sb.toString();
+        return HeaderParser.print(exports, allowedDirectives);
     }
-
-
-
 }
@@ -19,8 +19,6 @@
 package org.organicelement.deployment.mojo.util;
 
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -28,6 +26,7 @@ import java.util.TreeMap;
 import java.util.jar.Attributes;
 import java.util.jar.Manifest;
 
+import org.organicelement.deployment.model.utils.HeaderParser;
 import org.organicelement.deployment.mojo.BundleHeader;
 
 /**
@@ -90,64 +89,36 @@ public class ManifestBuilder {
      * @param att : the manifest attribute list to modify.
      */
     private void setImports(Attributes att) {
+        if (referredPackages.isEmpty()) {
+            // Keep the original header untouched.
+            return;
+        }
         Map<String, Map<String, String>> imports = parseHeader(att.getValue("Import-Package"));
         Map<String, String> ver = new TreeMap<String, String>();
         
-        // Add referred imports from the metadata
+        // Add referred imports from the metadata, existing clauses are kept
+        boolean added = false;
         for (int i = 0; i < referredPackages.size(); i++) {
             String pack = referredPackages.get(i);
-            imports.put(pack, new TreeMap<String, String>());
+            if (!imports.containsKey(pack)) {
+                imports.put(pack, new TreeMap<String, String>());
+                added = true;
+            }
         }
 
         // Write imports
-        if (!imports.isEmpty())
+        if (added)
         	att.putValue("Import-Package", printClauses(imports, "resolution:"));
     }
 
     /**
-     * Standard OSGi header parser. This parser can handle the format
-     * <pre>
-     * clauses ::= clause ( ',' clause ) +
-     * clause ::= name ( ';' name ) (';' key '=' value )
-     * </pre>
-     * This is mapped to a Map { name => Map { attr|directive => value } }
+     * Standard OSGi header parser, see {@link HeaderParser#parse(String)}.
      *
      * @param value String to parse.
-     * @return parsed map.
+     * @return parsed map, in clause order.
      */
     protected Map<String, Map<String, String>> parseHeader(String value) {
-        if (value == null || value.trim().length() == 0) {
-            return new HashMap<String, Map<String, String>>();
-        }
-
-        Map<String, Map<String, String>> result = new HashMap<String, Map<String, String>>();
-        QuotedTokenizer qt = new QuotedTokenizer(value, ";=,");
-        char del;
-        do {
-            boolean hadAttribute = false;
-            Map<String, String> clause = new HashMap<String, String>();
-            List<String> aliases = new ArrayList<String>();
-            aliases.add(qt.nextToken());
-            del = qt.getSeparator();
-            while (del == ';') {
-                String adname = qt.nextToken();
-                if ((del = qt.getSeparator()) != '=') {
-                    if (hadAttribute) {
-                        throw new IllegalArgumentException("Header contains name field after attribute or directive: " + adname + " from " + value);
-                    }
-                    aliases.add(adname);
-                } else {
-                    String advalue = qt.nextToken();
-                    clause.put(adname, advalue);
-                    del = qt.getSeparator();
-                    hadAttribute = true;
-                }
-            }
-            for (Iterator<String> i = aliases.iterator(); i.hasNext();) {
-                result.put(i.next(), clause);
-            }
-        } while (del == ',');
-        return result;
+        return HeaderParser.parse(value);
     }
 
     /**
@@ -158,43 +129,6 @@ public class ManifestBuilder {
      * @return the clauses
      */
     private String printClauses(Map<String, Map<String, String>> exports, String allowedDirectives) {
-        StringBuffer sb = new StringBuffer();
-        String del = "";
-
-        for (Iterator i = exports.entrySet().iterator(); i.hasNext();) {
-            Map.Entry entry = (Map.Entry) i.next();
-            String name = (String) entry.getKey();
-            Map map = (Map) entry.getValue();
-            sb.append(del);
-            sb.append(name);
-
-            for (Iterator j = map.entrySet().iterator(); j.hasNext();) {
-                Map.Entry entry2 = (Map.Entry) j.next();
-                String key = (String) entry2.getKey();
-
-                // Skip directives we do not recognize
-                if (key.endsWith(":") && allowedDirectives.indexOf(key) < 0) {
-                    continue;
-                }
-
-                String value = (String) entry2.getValue();
-                sb.append(";");
-                sb.append(key);
-                sb.append("=");
-                boolean dirty = value.indexOf(',') >= 0 || value.indexOf(';') >= 0;
-                if (dirty) {
-                    sb.append("\"");
-                }
-                sb.append(value);
-                if (dirty) {
-                    sb.append("\"");
-                }
-            }
-            del = ", ";
-        }
-        return sb.toString();
+        return HeaderParser.print(exports, allowedDirectives);
     }
-
-
-
 }
@@ -0,0 +1,208 @@
+package org.organicelement.deployment.mojo.util;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.maven.artifact.ArtifactUtils;
+
+/**
+ * Persistent cache of resolved artifact coordinates. Each entry maps
+ * (groupId, artifactId, version, classifier) to the resolved file together
+ * with its size, modification time and SHA-1 digest.
+ * <p>
+ * Release artifacts cannot change once published, an entry is served as
+ * long as its file is unchanged on disk. Snapshot entries additionally
+ * expire after a configurable time to live.
+ * </p>
+ * The cache is an append-only file of tab separated lines, compacted when
+ * stale lines dominate.
+ *
+ */
+public class ResolutionCache {
+
+	private final File file;
+
+	private final long snapshotTtl;
+
+	private Map<String, Entry> entries;
+
+	/**
+	 * A resolved artifact.
+	 */
+	public static final class Entry {
+
+		private final File file;
+
+		private final long size;
+
+		private final long lastModified;
+
+		private final String digest;
+
+		private final long resolvedAt;
+
+		Entry(File file, long size, long lastModified, String digest, long resolvedAt) {
+			this.file = file;
+			this.size = size;
+			this.lastModified = lastModified;
+			this.digest = digest;
+			this.resolvedAt = resolvedAt;
+		}
+
+		public File getFile() {
+			return file;
+		}
+
+		public String getDigest() {
+			return digest;
+		}
+
+		/**
+		 * @return <code>true</code> if the file still exists with the recorded size and modification time
+		 */
+		public boolean isValid() {
+			return file.isFile() && file.length() == size && file.lastModified() == lastModified;
+		}
+	}
+
+	/**
+	 * @param file the cache file
+	 * @param snapshotTtl the time to live of snapshot entries, in milliseconds
+	 */
+	public ResolutionCache(File file, long snapshotTtl) {
+		this.file = file;
+		this.snapshotTtl = snapshotTtl;
+	}
+
+	/**
+	 * @return the coordinate key of an artifact
+	 */
+	private static String key(String groupId, String artifactId, String version, String classifier) {
+		return groupId + ":" + artifactId + ":" + version + ":" + (classifier == null ? "" : classifier);
+	}
+
+	/**
+	 * Looks up a resolved artifact.
+	 *
+	 * @param ignoreTtl serve expired snapshot entries, e.g. when the resolver is not reachable
+	 * @return the cached file, <code>null</code> if absent, expired or changed on disk
+	 */
+	public synchronized File get(String groupId, String artifactId, String version, String classifier,
+	      boolean ignoreTtl) {
+		if (version == null) {
+			return null;
+		}
+		Entry entry = getEntries().get(key(groupId, artifactId, version, classifier));
+		if (entry == null || !entry.isValid()) {
+			return null;
+		}
+		if (!ignoreTtl && ArtifactUtils.isSnapshot(version)
+		      && System.currentTimeMillis() - entry.resolvedAt > snapshotTtl) {
+			return null;
+		}
+		return entry.file;
+	}
+
+	/**
+	 * Records a resolved artifact.
+	 *
+	 * @param resolved the resolved file
+	 * @param digest the SHA-1 digest of the file
+	 */
+	public synchronized void put(String groupId, String artifactId, String version, String classifier,
+	      File resolved, String digest) {
+		if (version == null) {
+			return;
+		}
+		String key = key(groupId, artifactId, version, classifier);
+		Entry entry = new Entry(resolved.getAbsoluteFile(), resolved.length(), resolved.lastModified(), digest,
+		      System.currentTimeMillis());
+		getEntries().put(key, entry);
+
+		try {
+			file.getParentFile().mkdirs();
+			Writer writer = new OutputStreamWriter(new FileOutputStream(file, true), "UTF-8");
+			try {
+				writer.write(format(key, entry));
+			} finally {
+				writer.close();
+			}
+		} catch (IOException e) {
+			// Only a cache.
+		}
+	}
+
+	private Map<String, Entry> getEntries() {
+		if (entries != null) {
+			return entries;
+		}
+		entries = new HashMap<String, Entry>();
+		if (!file.isFile()) {
+			return entries;
+		}
+
+		int lines = 0;
+		try {
+			BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+			try {
+				String line;
+				while ((line = reader.readLine()) != null) {
+					String[] fields = line.split("\t", 6);
+					if (fields.length != 6) {
+						continue;
+					}
+					try {
+						entries.put(fields[0], new Entry(new File(fields[5]), Long.parseLong(fields[1]),
+						      Long.parseLong(fields[2]), fields[3], Long.parseLong(fields[4])));
+						lines++;
+					} catch (NumberFormatException e) {
+						// Skip corrupted line.
+					}
+				}
+			} finally {
+				reader.close();
+			}
+		} catch (IOException e) {
+			entries.clear();
+			return entries;
+		}
+
+		if (lines > 2 * entries.size() + 100) {
+			compact();
+		}
+		return entries;
+	}
+
+	private void compact() {
+		try {
+			File partial = File.createTempFile("resolved_", ".part", file.getParentFile());
+			Writer writer = new OutputStreamWriter(new FileOutputStream(partial), "UTF-8");
+			try {
+				for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+					writer.write(format(entry.getKey(), entry.getValue()));
+				}
+			} finally {
+				writer.close();
+			}
+			if (!partial.renameTo(file)) {
+				partial.delete();
+			}
+		} catch (IOException e) {
+			// Only a cache.
+		}
+	}
+
+	private static String format(String key, Entry entry) {
+		// The path is last as it is the only field that may contain a tab.
+		return key + "\t" + entry.size + "\t" + entry.lastModified + "\t" + entry.digest + "\t" + entry.resolvedAt
+		      + "\t" + entry.file.getPath() + "\n";
+	}
+}
@@ -1,14 +1,21 @@
 package org.organicelement.deployment.model;
 
 import org.junit.Test;
+import org.organicelement.deployment.model.utils.Handle;
+import org.organicelement.deployment.model.utils.PackageIndex;
+import org.organicelement.deployment.model.utils.Store;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.Arrays;
 import java.util.jar.Attributes;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
+import java.util.jar.JarOutputStream;
 import java.util.jar.Manifest;
 
 import static org.junit.Assert.*;
@@ -453,6 +460,160 @@ public class APITest {
         new DeploymentPackage().setSymbolicName("sn").build();
     }
 
+    @Test
+    public void testAllViolations() throws IOException {
+        DeploymentPackage dp = new DeploymentPackage().setSymbolicName("my.dp").setVersion("1.0.x");
+        dp.addBundle(BUNDLE1, "bundles//configadmin.jar");
+        dp.addBundle(new BundleResource().setURL(BUNDLE2).setMissing(true));
+        dp.addResource(RESOURCE, "my\nprocessor");
+
+        for (int threads = 1; threads <= 4; threads += 3) {
+            try {
+                dp.check(threads);
+                fail("The package is not valid");
+            } catch (CheckingException e) {
+                assertEquals(Arrays.asList(new String[] {
+                    "1.0.x is not a valid version",
+                    "Section name 'bundles//configadmin.jar' is not a valid path",
+                    "Cannot use missing bundle " + BUNDLE2_SN + " if the package does not define the "
+                            + Constants.DEPLOYMENTPACKAGE_FIXPACK + " entry",
+                    "'my\nprocessor' is not a valid pid" }), e.getViolations());
+                assertTrue(e.getMessage().startsWith("4 violations :"));
+            }
+        }
+    }
+
+    /**
+     * A package is checked again only once changed.
+     */
+    @Test
+    public void testCheckOnce() throws IOException, CheckingException {
+        DeploymentPackage dp = new DeploymentPackage().setSymbolicName("my.dp");
+        for (int i = 0; i < 20; i++) {
+            dp.addResource(RESOURCE, null, "conf/pax-web-" + i + ".xml");
+        }
+
+        for (int run = 0; run < 2; run++) {
+            dp.setVersion("1.0." + run);
+            dp.check(4);
+            dp.check(4);
+        }
+
+        dp.setVersion("1.0.x");
+        try {
+            dp.check();
+            fail("The version is not valid");
+        } catch (CheckingException e) {
+            assertEquals("1.0.x is not a valid version", e.getMessage());
+        }
+    }
+
+    private static Handle createBundle(String sn, String version) throws IOException {
+        Manifest mf = new Manifest();
+        mf.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+        mf.getMainAttributes().putValue("Bundle-SymbolicName", sn);
+        mf.getMainAttributes().putValue("Bundle-Version", version);
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        new JarOutputStream(bos, mf).close();
+        return Store.STORE.store(new ByteArrayInputStream(bos.toByteArray()));
+    }
+
+    @Test
+    public void testUpdateBundle() throws IOException, CheckingException {
+        BundleResource first = new BundleResource().setHandle(createBundle("org.example.first", "1.0.0"));
+        BundleResource middle = new BundleResource().setHandle(createBundle("org.example.middle", "1.0.0"));
+        BundleResource last = new BundleResource().setHandle(createBundle("org.example.last", "1.0.0"));
+        DeploymentPackage dp = new DeploymentPackage().setSymbolicName("my.dp").setVersion("1.0.0");
+        dp.addBundle(first).addBundle(middle).addBundle(last);
+        dp.check();
+
+        Handle previous = middle.getHandle();
+        middle.setHandle(createBundle("org.example.middle", "1.0.1"));
+        dp.updateBundle(middle);
+        assertEquals(Arrays.asList(new BundleResource[] { first, middle, last }), dp.getBundles());
+        assertEquals("1.0.1", dp.getBundles().get(1).getVersion());
+        dp.check();
+
+        // The previous content is not indexed anymore.
+        BundleResource other = new BundleResource().setHandle(previous).setPath("bundles/other.jar")
+                .setSymbolicName(null);
+        dp.addBundle(other);
+        assertEquals(Arrays.asList(new BundleResource[] { first, middle, last, other }), dp.getBundles());
+
+        dp.removeBundle("org.example.middle");
+        assertEquals(Arrays.asList(new BundleResource[] { first, last, other }), dp.getBundles());
+        assertTrue(dp.getConflicts().isEmpty());
+    }
+
+    @Test
+    public void testConflicts() throws IOException, CheckingException {
+        BundleResource first = new BundleResource().setURL(BUNDLE1);
+        BundleResource higher = new BundleResource().setURL(BUNDLE1).setPath("bundles/configadmin.jar")
+                .setVersion("2.0.0");
+        BundleResource shell = new BundleResource().setURL(BUNDLE2);
+
+        DeploymentPackage dp = new DeploymentPackage().setSymbolicName("my.dp").setVersion("1.0.0");
+        dp.addBundle(first).addBundle(shell).addBundle(higher).addBundle(BUNDLE1);
+        dp.addResource(RESOURCE, RESOURCE_PROCESSOR).addResource(RESOURCE, null);
+        assertEquals(Arrays.asList(new BundleResource[] { higher, shell }), dp.getBundles());
+        assertEquals(1, dp.getResources().size());
+        assertEquals(Arrays.asList(new String[] {
+            BUNDLE1_SN + " " + BUNDLE1_V + " (" + BUNDLE1_SN + ".jar) replaced by " + BUNDLE1_SN
+                    + " 2.0.0 (bundles/configadmin.jar)",
+            BUNDLE1_SN + " " + BUNDLE1_V + " (" + BUNDLE1_SN + ".jar) ignored, conflicts with " + BUNDLE1_SN
+                    + " 2.0.0 (bundles/configadmin.jar)",
+            RESOURCE_NAME + " ignored, conflicts with the resource " + RESOURCE_NAME }), dp.getConflicts());
+        dp.check();
+
+        dp.removeBundle(BUNDLE1_SN).removeBundleByName(BUNDLE2_SN + ".jar").removeResource(RESOURCE_NAME);
+        assertTrue(dp.getBundles().isEmpty());
+        assertTrue(dp.getResources().isEmpty());
+
+        dp = new DeploymentPackage().setSymbolicName("my.dp").setVersion("1.0.0")
+                .setConflictPolicy(ConflictPolicy.FIRST_WINS);
+        dp.addBundle(first).addBundle(higher);
+        assertEquals(Arrays.asList(new BundleResource[] { first }), dp.getBundles());
+        dp.check();
+
+        dp.setConflictPolicy(ConflictPolicy.FAIL);
+        try {
+            dp.build();
+            fail("The bundles conflict");
+        } catch (CheckingException e) {
+            assertEquals(BUNDLE1_SN + " 2.0.0 (bundles/configadmin.jar) ignored, conflicts with " + BUNDLE1_SN + " "
+                    + BUNDLE1_V + " (" + BUNDLE1_SN + ".jar)", e.getMessage());
+        }
+    }
+
+    @Test
+    public void testResolution() throws IOException, CheckingException {
+        DeploymentPackage dp = new DeploymentPackage();
+        dp.addBundle(BUNDLE1).addBundle(BUNDLE2).setSymbolicName("my.dp").setVersion("1.0.0");
+
+        try {
+            dp.checkResolution(null);
+            fail("The framework packages are not exported");
+        } catch (CheckingException e) {
+            assertTrue(e.getMessage(), e.getMessage().startsWith("4 imports do not resolve"));
+            assertTrue(e.getMessage(), e.getMessage().contains(
+                    BUNDLE2_SN + " : org.osgi.service.packageadmin;version=\"1.2\", not exported"));
+        }
+
+        PackageIndex platform = new PackageIndex();
+        platform.addExports("org.apache.felix.framework", "org.osgi.framework;version=1.3,"
+                + "org.osgi.service.packageadmin;version=1.2,org.osgi.service.startlevel;version=1.1");
+        try {
+            dp.checkResolution(platform);
+            fail("The shell requires the framework package 1.5");
+        } catch (CheckingException e) {
+            assertEquals("1 imports do not resolve :\n  " + BUNDLE2_SN + " : org.osgi.framework;version=\"1.5\", "
+                    + "exported by org.apache.felix.framework 1.3 only", e.getMessage());
+        }
+
+        platform.addExports("org.apache.felix.framework", "org.osgi.framework;version=1.5");
+        dp.checkResolution(platform);
+    }
+
 
 
 
@@ -0,0 +1,98 @@
+package org.organicelement.deployment.model;
+
+import java.util.Random;
+import java.util.regex.Pattern;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+
+public class CheckerTest {
+
+    private static final String VERSION = "[0-9]+(\\.[0-9]+(\\.[0-9]+(\\.[0-9A-Za-z_-]+)?)?)?";
+
+    /**
+     * The grammars the validators implement, as regular expressions.
+     */
+    private static final Pattern UNIQUE_NAME = Pattern.compile(".+(\\..+)*");
+
+    private static final Pattern SYMBOLIC_NAME = Pattern.compile("[a-zA-Z0-9_-]+(\\.[a-zA-Z0-9_-]+)*");
+
+    private static final Pattern VERSION_PATTERN = Pattern.compile(VERSION);
+
+    private static final Pattern VERSION_RANGE = Pattern.compile("([\\[(] *" + VERSION + " *, *" + VERSION
+            + " *[\\])])|" + VERSION);
+
+    private static final Pattern PATH_NAME = Pattern.compile("[^/\"\r\n\0]+(/[^/\"\r\n\0]+)*");
+
+    private static final String ALPHABET = "aZ09._-/ [](),;\"\n\r\0\u0085\u2028\u2029\u00e9";
+
+    private static String random(Random random, String alphabet, int maxLength) {
+        int length = random.nextInt(maxLength + 1);
+        StringBuilder sb = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            sb.append(alphabet.charAt(random.nextInt(alphabet.length())));
+        }
+        return sb.toString();
+    }
+
+    @Test
+    public void testValues() {
+        assertTrue(Checker.checkVersion("1"));
+        assertTrue(Checker.checkVersion("1.2.3.qualifier-2_x"));
+        assertFalse(Checker.checkVersion("1..2"));
+        assertFalse(Checker.checkVersion("1.2.3.4.5"));
+        assertFalse(Checker.checkVersion("1.a"));
+        assertTrue(Checker.checkVersionRange("[1.0.0, 2.0.0)"));
+        assertTrue(Checker.checkVersionRange("(1,2]"));
+        assertTrue(Checker.checkVersionRange("1.0"));
+        assertFalse(Checker.checkVersionRange("[1.0,2.0"));
+        assertFalse(Checker.checkVersionRange("[1.0]"));
+        assertTrue(Checker.checkBundleSymbolicName("org.example.my-bundle_2"));
+        assertFalse(Checker.checkBundleSymbolicName("org..example"));
+        assertTrue(Checker.checkUniqueName("org.example.my-dp"));
+        assertFalse(Checker.checkUniqueName(""));
+        assertTrue(Checker.checkPathName("bundles/org.example-1.0.jar"));
+        assertFalse(Checker.checkPathName("/bundles/a.jar"));
+        assertFalse(Checker.checkPathName("bundles//a.jar"));
+        assertFalse(Checker.checkPathName("bundles/"));
+        assertFalse(Checker.checkPathName("a\"b"));
+    }
+
+    /**
+     * Random values must be accepted exactly when the grammar matches them.
+     */
+    @Test
+    public void testFuzz() {
+        Random random = new Random(42);
+        String versionAlphabet = "0123.a_-[](), ";
+        for (int i = 0; i < 200000; i++) {
+            String value = random(random, ALPHABET, 12);
+            assertEquals(value, UNIQUE_NAME.matcher(value).matches(), Checker.checkUniqueName(value));
+            assertEquals(value, SYMBOLIC_NAME.matcher(value).matches(), Checker.checkBundleSymbolicName(value));
+            assertEquals(value, PATH_NAME.matcher(value).matches(), Checker.checkPathName(value));
+
+            String version = random(random, versionAlphabet, 16);
+            assertEquals(version, VERSION_PATTERN.matcher(version).matches(), Checker.checkVersion(version));
+            assertEquals(version, VERSION_RANGE.matcher(version).matches(), Checker.checkVersionRange(version));
+        }
+    }
+
+    /**
+     * The unique-name pattern backtracks exponentially on long dotted names
+     * it rejects.
+     */
+    @Test(timeout = 1000)
+    public void testNoBacktracking() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 10000; i++) {
+            sb.append("a.");
+        }
+        sb.append('\n');
+        assertFalse(Checker.checkUniqueName(sb.toString()));
+        assertFalse(Checker.checkBundleSymbolicName(sb.toString()));
+        assertFalse(Checker.checkPathName(sb.toString()));
+    }
+
+}
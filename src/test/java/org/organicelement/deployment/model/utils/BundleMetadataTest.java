@@ -0,0 +1,72 @@
+package org.organicelement.deployment.model.utils;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+
+public class BundleMetadataTest {
+
+    private static File createBundle(File dir, String bsn, int entries) throws IOException {
+        File bundle = new File(dir, "metadata.jar");
+        Manifest mf = new Manifest();
+        mf.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+        mf.getMainAttributes().putValue("Bundle-SymbolicName", bsn);
+        mf.getMainAttributes().putValue("Bundle-Version", "1.2.3");
+        mf.getMainAttributes().putValue("Export-Package", "org.example.a;version=\"1.0\",org.example.b");
+        mf.getMainAttributes().putValue("Import-Package", "org.osgi.framework;version=\"[1.5,2)\"");
+        JarOutputStream jos = new JarOutputStream(new FileOutputStream(bundle), mf);
+        byte[] data = new byte[2048];
+        for (int i = 0; i < entries; i++) {
+            jos.putNextEntry(new JarEntry("org/example/Class" + i + ".class"));
+            jos.write(data);
+            jos.closeEntry();
+        }
+        jos.close();
+        return bundle;
+    }
+
+    @Test
+    public void testRead() throws IOException {
+        File dir = new File("target/metadata-test");
+        dir.mkdirs();
+        File bundle = createBundle(dir, "org.example.bundle; singleton:=true", 10);
+
+        BundleMetadata metadata = BundleMetadata.read(bundle);
+        assertEquals("org.example.bundle", metadata.getSymbolicName());
+        assertEquals("1.2.3", metadata.getVersion());
+        assertEquals("org.example.a;version=\"1.0\",org.example.b", metadata.getExportPackage());
+        assertEquals("org.osgi.framework;version=\"[1.5,2)\"", metadata.getImportPackage());
+
+        // The file must not be held open.
+        assertTrue(bundle.delete());
+    }
+
+    @Test
+    public void testIndex() throws IOException {
+        File dir = new File("target/metadata-test");
+        dir.mkdirs();
+        File index = new File(dir, "metadata.idx");
+        index.delete();
+        File bundle = createBundle(dir, "org.example.indexed", 1);
+
+        new MetadataIndex(index).get("0123", bundle);
+        assertTrue(bundle.delete());
+
+        // A warm index never opens the bundle again.
+        BundleMetadata metadata = new MetadataIndex(index).get("0123", bundle);
+        assertEquals("org.example.indexed", metadata.getSymbolicName());
+        assertEquals("1.2.3", metadata.getVersion());
+        assertEquals("org.example.a;version=\"1.0\",org.example.b", metadata.getExportPackage());
+        assertEquals("org.osgi.framework;version=\"[1.5,2)\"", metadata.getImportPackage());
+    }
+
+}
@@ -0,0 +1,71 @@
+package org.organicelement.deployment.model.utils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+import org.junit.Test;
+import org.organicelement.deployment.mojo.util.ManifestBuilder;
+
+import static org.junit.Assert.*;
+
+
+public class ClassReferencesTest {
+
+    private static byte[] getBytes(Class<?> clazz) throws IOException {
+        InputStream is = clazz.getResourceAsStream(clazz.getSimpleName() + ".class");
+        try {
+            byte[] buffer = new byte[4096];
+            ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            int read;
+            while ((read = is.read(buffer)) != -1) {
+                bos.write(buffer, 0, read);
+            }
+            return bos.toByteArray();
+        } finally {
+            is.close();
+        }
+    }
+
+    @Test
+    public void testReferredPackages() throws IOException {
+        Set<String> packages = new HashSet<String>();
+        ClassReferences.addReferredPackages(getBytes(ClassReferencesTest.class), packages);
+        // Annotation, static import and class constant.
+        assertTrue(packages.contains("org.junit"));
+        assertTrue(packages.contains("org.organicelement.deployment.mojo.util"));
+        assertTrue(packages.contains("java.util.jar"));
+    }
+
+    @Test
+    public void testImportedPackages() throws IOException {
+        File dir = new File("target/references-test");
+        dir.mkdirs();
+        File bundle = new File(dir, "builder.jar");
+        JarOutputStream jos = new JarOutputStream(new FileOutputStream(bundle));
+        jos.putNextEntry(new JarEntry("org/organicelement/deployment/mojo/util/ManifestBuilder.class"));
+        jos.write(getBytes(ManifestBuilder.class));
+        jos.closeEntry();
+        // Not analyzed.
+        jos.putNextEntry(new JarEntry("META-INF/versions/9/org/example/A.class"));
+        jos.write(new byte[] { 1, 2, 3 });
+        jos.closeEntry();
+        jos.close();
+
+        assertEquals(new HashSet<String>(Arrays.asList(new String[] { "org.organicelement.deployment.model.utils",
+            "org.organicelement.deployment.mojo" })), ClassReferences.getImportedPackages(bundle));
+    }
+
+    @Test(expected = IOException.class)
+    public void testInvalidClass() throws IOException {
+        ClassReferences.addReferredPackages(new byte[] { 1, 2, 3, 4 }, new HashSet<String>());
+    }
+
+}
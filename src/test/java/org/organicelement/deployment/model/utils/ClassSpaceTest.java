@@ -0,0 +1,104 @@
+package org.organicelement.deployment.model.utils;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+
+public class ClassSpaceTest {
+
+    private static final File BUNDLE = new File("src/test/resources/bundles/org.apache.felix.shell-1.4.0.jar");
+
+    @Test
+    public void testSplitPackages() {
+        ClassSpace space = new ClassSpace();
+        space.add("a.jar", Arrays.asList(new String[] { "org/a/A.class", "org/a/B.class", "org/b/C.class" }),
+                "org.a");
+        space.add("b.jar", Arrays.asList(new String[] { "org/a/B.class", "org/c/D.class" }), null);
+        space.add("c.jar", Arrays.asList(new String[] { "org/b/E.class", "org/a/B.class" }), "org.c;version=1");
+        space.add("d.jar", Arrays.asList(new String[] { "Default.class" }), null);
+
+        assertEquals(Arrays.asList(new String[] { "org.a", "org.b", "org.c" }),
+                new ArrayList<String>(space.getSplitPackages().keySet()));
+        assertEquals(Arrays.asList(new String[] { "a.jar", "b.jar", "c.jar" }),
+                new ArrayList<String>(space.getSplitPackages().get("org.a")));
+        assertEquals(Arrays.asList(new String[] { "b.jar", "c.jar" }),
+                new ArrayList<String>(space.getSplitPackages().get("org.c")));
+
+        assertEquals(Collections.singleton("org/a/B.class"), space.getDuplicateClasses().keySet());
+        Set<String> owners = space.getDuplicateClasses().get("org/a/B.class");
+        assertEquals(Arrays.asList(new String[] { "a.jar", "b.jar", "c.jar" }), new ArrayList<String>(owners));
+    }
+
+    @Test
+    public void testClassEntries() throws IOException {
+        List<String> entries = ClassSpace.getClassEntries(BUNDLE);
+        assertTrue(entries.contains("org/apache/felix/shell/ShellService.class"));
+        for (String entry : entries) {
+            assertTrue(entry, entry.endsWith(".class") && !entry.startsWith("META-INF/"));
+        }
+        assertEquals(entries, ClassSpace.getClassEntries(Store.STORE.store(BUNDLE)));
+        // Cached per digest.
+        assertEquals(entries, ClassSpace.getClassEntries(Store.STORE.store(BUNDLE)));
+    }
+
+    private static File createBundle(String name, String... entries) throws IOException {
+        File dir = new File("target/class-space-test");
+        dir.mkdirs();
+        File file = new File(dir, name);
+        JarOutputStream jos = new JarOutputStream(new FileOutputStream(file));
+        for (String entry : entries) {
+            jos.putNextEntry(new JarEntry(entry));
+            jos.closeEntry();
+        }
+        jos.close();
+        return file;
+    }
+
+    @Test
+    public void testDescriptors() throws IOException {
+        ClassSpace space = new ClassSpace();
+        space.add("a.jar", ClassSpace.getClassEntries(createBundle("a.jar", "module-info.class",
+                "org/a/package-info.class", "org/a/A.class", "META-INF/versions/9/module-info.class")), null);
+        space.add("b.jar", ClassSpace.getClassEntries(createBundle("b.jar", "module-info.class",
+                "org/b/package-info.class", "org/b/B.class", "org/a/package-info.class")), null);
+
+        assertTrue(space.getDuplicateClasses().isEmpty());
+        assertEquals(Arrays.asList(new String[] { "org/a/A.class" }),
+                ClassSpace.getClassEntries(new File("target/class-space-test/a.jar")));
+    }
+
+    private static List<String> createEntries(int bundle, int classes) {
+        List<String> entries = new ArrayList<String>(classes);
+        for (int i = 0; i < classes; i++) {
+            // Every tenth class is also a class of the previous bundle.
+            int owner = i % 10 == 0 ? bundle - 1 : bundle;
+            int index = i % 10 == 0 ? i + 1 : i;
+            entries.add("org/example/b" + owner + "/p" + (index % 20) + "/C" + index + ".class");
+        }
+        return entries;
+    }
+
+    @Test
+    public void testDuplicateClasses() {
+        ClassSpace space = new ClassSpace();
+        for (int i = 0; i < 50; i++) {
+            space.add("b" + i, createEntries(i, 200), null);
+        }
+        assertEquals(49 * 20, space.getDuplicateClasses().size());
+        assertEquals(Arrays.asList(new String[] { "b0", "b1" }),
+                new ArrayList<String>(space.getDuplicateClasses().get("org/example/b0/p1/C1.class")));
+    }
+
+}
@@ -0,0 +1,79 @@
+package org.organicelement.deployment.model.utils;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+
+public class HeaderParserTest {
+
+    private static String createImports(int packages) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < packages; i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append("org.example.pkg").append(i);
+            if (i % 2 == 0) {
+                sb.append(";version=\"[1.").append(i).append(",2)\"");
+            }
+            if (i % 5 == 0) {
+                sb.append(";resolution:=optional");
+            }
+        }
+        return sb.toString();
+    }
+
+    @Test
+    public void testParse() {
+        Map<String, Map<String, String>> clauses = HeaderParser.parse(
+                "org.b ; org.a;version=\"[1.0,2)\";resolution:=optional, org.c;x='it\\'s',org.d;y = z ,");
+
+        Iterator<String> names = clauses.keySet().iterator();
+        assertEquals(Arrays.asList(new String[] { "org.b", "org.a", "org.c", "org.d" }),
+                Arrays.asList(new String[] { names.next(), names.next(), names.next(), names.next() }));
+        assertFalse(names.hasNext());
+        assertSame(clauses.get("org.a"), clauses.get("org.b"));
+        assertEquals("[1.0,2)", clauses.get("org.a").get("version"));
+        assertEquals("optional", clauses.get("org.a").get("resolution:"));
+        assertEquals("it's", clauses.get("org.c").get("x"));
+        assertEquals("z", clauses.get("org.d").get("y"));
+
+        assertTrue(HeaderParser.parse(null).isEmpty());
+        assertTrue(HeaderParser.parse("  ").isEmpty());
+        assertEquals("org.example", HeaderParser.getFirstName(" org.example ; singleton:=true"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNameAfterAttribute() {
+        HeaderParser.parse("org.a;version=1;org.b");
+    }
+
+    @Test
+    public void testSplit() {
+        String header = "lib/a.so;osname='Linux; x86';processor=\"x86,64\", lib/b.so;version='it\\'s, 1',"
+                + " lib/c's.so;x=y\"z,*";
+        assertEquals(Arrays.asList(new String[] { "lib/a.so;osname='Linux; x86';processor=\"x86,64\"",
+            " lib/b.so;version='it\\'s, 1'", " lib/c's.so;x=y\"z", "*" }), HeaderParser.split(header, ','));
+        assertEquals(Arrays.asList(new String[] { "lib/a.so", "osname='Linux; x86'", "processor=\"x86,64\"" }),
+                HeaderParser.split(HeaderParser.split(header, ',').get(0), ';'));
+        // The same clauses as parse finds.
+        assertEquals(HeaderParser.split(header, ',').size(), HeaderParser.parse(header).size());
+    }
+
+    @Test
+    public void testPrint() {
+        String header = "org.b;version=\"[1.0,2)\";resolution:=optional, org.a;uses:=\"x,y\"";
+        assertEquals("org.b;version=\"[1.0,2)\";resolution:=optional, org.a",
+                HeaderParser.print(HeaderParser.parse(header), "resolution:"));
+
+        String imports = createImports(100);
+        assertEquals(HeaderParser.parse(imports),
+                HeaderParser.parse(HeaderParser.print(HeaderParser.parse(imports), "resolution:")));
+    }
+
+}
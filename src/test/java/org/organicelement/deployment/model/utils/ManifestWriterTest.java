@@ -0,0 +1,122 @@
+package org.organicelement.deployment.model.utils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.util.Random;
+import java.util.jar.Attributes;
+import java.util.jar.Manifest;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+
+public class ManifestWriterTest {
+
+    private static byte[] stream(Manifest manifest) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        ManifestWriter.write(manifest.getMainAttributes(), manifest.getEntries(), bos);
+        return bos.toByteArray();
+    }
+
+    private static String header(String name, String value) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        ManifestWriter writer = new ManifestWriter(bos);
+        writer.header(name, value);
+        writer.finish();
+        return new String(bos.toByteArray(), "UTF-8");
+    }
+
+    private static String repeat(char c, int count) {
+        StringBuilder sb = new StringBuilder(count);
+        for (int i = 0; i < count; i++) {
+            sb.append(c);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Lines hold at most 70 bytes, 72 with CRLF, around every wrapping
+     * boundary.
+     */
+    @Test
+    public void testWrapping() throws IOException {
+        // "A: " and 67 characters, exactly 70 bytes.
+        assertEquals("A: " + repeat('a', 67) + "\r\n\r\n", header("A", repeat('a', 67)));
+        assertEquals("A: " + repeat('a', 67) + "\r\n b\r\n\r\n", header("A", repeat('a', 67) + "b"));
+        // A continuation line holds the leading space and 69 characters.
+        assertEquals("A: " + repeat('a', 67) + "\r\n " + repeat('b', 69) + "\r\n\r\n",
+                header("A", repeat('a', 67) + repeat('b', 69)));
+        assertEquals("A: " + repeat('a', 67) + "\r\n " + repeat('b', 69) + "\r\n c\r\n\r\n",
+                header("A", repeat('a', 67) + repeat('b', 69) + "c"));
+        assertEquals("Empty: \r\n\r\n", header("Empty", ""));
+    }
+
+    @Test
+    public void testSections() throws IOException {
+        Manifest manifest = new Manifest();
+        manifest.getMainAttributes().putValue("Manifest-Version", "1.0");
+        Attributes section = new Attributes();
+        section.putValue("SHA1-Digest", "aGVsbG8gd29ybGQgaGVsbG8gd29ybGQ=");
+        manifest.getEntries().put("bundles/" + repeat('x', 60) + ".jar", section);
+
+        assertEquals("Manifest-Version: 1.0\r\n"
+                + "\r\n"
+                + "Name: bundles/" + repeat('x', 56) + "\r\n"
+                + " xxxx.jar\r\n"
+                + "SHA1-Digest: aGVsbG8gd29ybGQgaGVsbG8gd29ybGQ=\r\n"
+                + "\r\n", new String(stream(manifest), "UTF-8"));
+
+        // No header is written without a version, as the JDK does.
+        Manifest empty = new Manifest();
+        empty.getMainAttributes().putValue("Not-Written", "without a version");
+        assertEquals("\r\n", new String(stream(empty), "UTF-8"));
+    }
+
+    /**
+     * Multi-byte characters are never split across lines, whatever their
+     * position, and the JDK reads the values back.
+     */
+    @Test
+    public void testUtf8Wrapping() throws IOException {
+        Random random = new Random(7);
+        // 1, 2, 3 and 4 bytes characters.
+        int[] alphabet = new int[] { 'a', 0xe9, 0xdf, 0x4e2d, 0x6587, 0x1f600 };
+        for (int length = 0; length < 200; length++) {
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < length; i++) {
+                sb.appendCodePoint(alphabet[random.nextInt(alphabet.length)]);
+            }
+            String value = sb.toString();
+            Manifest manifest = new Manifest();
+            manifest.getMainAttributes().putValue("Manifest-Version", "1.0");
+            manifest.getMainAttributes().putValue("Bundle-Name", value);
+            Attributes section = new Attributes();
+            section.putValue("Bundle-Description", value);
+            manifest.getEntries().put(value + ".jar", section);
+
+            byte[] bytes = stream(manifest);
+            int start = 0;
+            for (int i = 0; i < bytes.length; i++) {
+                if (bytes[i] == '\n') {
+                    assertTrue("Line longer than 72 bytes", i + 1 - start <= 72);
+                    try {
+                        Charset.forName("UTF-8").newDecoder().decode(ByteBuffer.wrap(bytes, start, i + 1 - start));
+                    } catch (CharacterCodingException e) {
+                        fail("A character is split across lines : " + value);
+                    }
+                    start = i + 1;
+                }
+            }
+
+            Manifest read = new Manifest(new ByteArrayInputStream(bytes));
+            assertEquals(value, read.getMainAttributes().getValue("Bundle-Name"));
+            assertEquals(value, read.getAttributes(value + ".jar").getValue("Bundle-Description"));
+        }
+    }
+
+}
@@ -0,0 +1,85 @@
+package org.organicelement.deployment.model.utils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.jar.Attributes;
+import java.util.jar.Manifest;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+
+public class OrderedManifestTest {
+
+    private static void fill(Manifest manifest, int sections) {
+        manifest.getMainAttributes().putValue("Manifest-Version", "1.0");
+        manifest.getMainAttributes().putValue("DeploymentPackage-SymbolicName", "org.example.dp");
+        for (int i = 0; i < sections; i++) {
+            Attributes attr = new Attributes();
+            attr.putValue("Bundle-SymbolicName", "org.example.bundle" + i);
+            attr.putValue("Name-Digest", "aGVsbG8gd29ybGQgaGVsbG8gd29ybGQ=");
+            manifest.getEntries().put("bundles/org.example.bundle" + (sections - i) + ".jar", attr);
+        }
+    }
+
+    private static byte[] write(Manifest manifest) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        manifest.write(bos);
+        return bos.toByteArray();
+    }
+
+    @Test
+    public void testOrder() throws IOException {
+        OrderedManifest manifest = new OrderedManifest();
+        fill(manifest, 100);
+
+        OrderedManifest read = new OrderedManifest();
+        read.read(new ByteArrayInputStream(write(manifest)));
+        assertEquals(manifest, read);
+        assertEquals(new Manifest(new ByteArrayInputStream(write(manifest))), read);
+
+        Iterator<String> names = read.getEntries().keySet().iterator();
+        for (int i = 0; i < 100; i++) {
+            assertEquals("bundles/org.example.bundle" + (100 - i) + ".jar", names.next());
+        }
+    }
+
+    /**
+     * The sections come in insertion order, lines are wrapped at 72 bytes,
+     * CRLF included.
+     */
+    @Test
+    public void testOutput() throws IOException {
+        OrderedManifest manifest = new OrderedManifest();
+        manifest.getMainAttributes().putValue("Manifest-Version", "1.0");
+        manifest.getMainAttributes().putValue("DeploymentPackage-Description",
+                "A description long enough to be wrapped, twice even, as it goes on and on and on and on "
+                        + "past the 72 bytes of a manifest line, and then some more.");
+        Attributes second = new Attributes();
+        second.putValue("X-Long", "0123456789012345678901234567890123456789012345678901234567890123456789"
+                + "01234567890123456789012345678901234567890123456789012345678901234567890123456789");
+        manifest.getEntries().put("bundles/org.example.bundle2.jar", second);
+        Attributes first = new Attributes();
+        first.putValue("Bundle-SymbolicName", "org.example.bundle1");
+        manifest.getEntries().put("bundles/org.example.bundle1.jar", first);
+
+        String expected = "Manifest-Version: 1.0\r\n"
+                + "DeploymentPackage-Description: A description long enough to be wrapped\r\n"
+                + " , twice even, as it goes on and on and on and on past the 72 bytes of\r\n"
+                + "  a manifest line, and then some more.\r\n"
+                + "\r\n"
+                + "Name: bundles/org.example.bundle2.jar\r\n"
+                + "X-Long: 01234567890123456789012345678901234567890123456789012345678901\r\n"
+                + " 234567890123456789012345678901234567890123456789012345678901234567890\r\n"
+                + " 1234567890123456789\r\n"
+                + "\r\n"
+                + "Name: bundles/org.example.bundle1.jar\r\n"
+                + "Bundle-SymbolicName: org.example.bundle1\r\n"
+                + "\r\n";
+        assertEquals(expected, new String(write(manifest), "UTF-8"));
+    }
+
+}
@@ -0,0 +1,40 @@
+package org.organicelement.deployment.model.utils;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+
+public class PackageIndexTest {
+
+    @Test
+    public void testVersions() {
+        PackageIndex index = new PackageIndex();
+        index.addExports("a", "org.a;org.b;version=\"1.2.3\",org.c,org.d;specification-version=2.0.0.beta");
+
+        assertEquals(Collections.EMPTY_LIST, index.getUnresolved("x",
+                "org.a;version=\"[1.2,2)\",org.b;version=1.2.3,org.c,org.d;version=\"(1.0,2.0.0.beta]\""));
+        assertEquals(Collections.EMPTY_LIST, index.getUnresolved("x",
+                "java.util,org.e;resolution:=optional,org.a;version=\"[2,3)\";resolution:=optional"));
+        assertEquals(Collections.EMPTY_LIST, index.getUnresolved("x", null));
+
+        assertEquals(Arrays.asList(new String[] {
+            "x : org.a;version=\"(1.2.3,2)\", exported by a 1.2.3 only",
+            "x : org.c;version=\"0.0.1\", exported by a 0.0.0 only",
+            "x : org.d;version=\"[1.0,2.0.0)\", exported by a 2.0.0.beta only",
+            "x : org.e, not exported",
+            "x : org.b;version=\"[1.0\", invalid version range" }),
+                index.getUnresolved("x", "org.a;version=\"(1.2.3,2)\",org.c;version=0.0.1,"
+                        + "org.d;version=\"[1.0,2.0.0)\",org.e,org.b;version=\"[1.0\""));
+
+        PackageIndex copy = new PackageIndex(index);
+        copy.addExports("b", "org.e;version=1");
+        assertTrue(copy.exports("org.e"));
+        assertFalse(index.exports("org.e"));
+        assertEquals(Collections.EMPTY_LIST, copy.getUnresolved("x", "org.a;version=1.2.3,org.e;version=1"));
+    }
+
+}
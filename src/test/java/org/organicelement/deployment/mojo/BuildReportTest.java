@@ -0,0 +1,27 @@
+package org.organicelement.deployment.mojo;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+
+public class BuildReportTest {
+
+    @Test
+    public void testParallelPhases() {
+        BuildReport report = new BuildReport();
+        // Three overlapping runs on worker threads, then a later one.
+        report.phase("transform", 0, 100);
+        report.phase("transform", 20, 80);
+        report.phase("transform", 50, 150);
+        report.phase("transform", 200, 250);
+        report.phase("build", 300, 310);
+
+        assertEquals(Long.valueOf(200), report.getPhases().get("transform"));
+        assertEquals(Long.valueOf(310), report.getSummedPhases().get("transform"));
+        assertEquals(Long.valueOf(10), report.getPhases().get("build"));
+        assertEquals(Long.valueOf(10), report.getSummedPhases().get("build"));
+        assertArrayEquals(new Object[] { "transform", "build" }, report.getPhases().keySet().toArray());
+    }
+
+}
@@ -0,0 +1,152 @@
+package org.organicelement.deployment.mojo;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.DefaultArtifact;
+import org.apache.maven.artifact.handler.DefaultArtifactHandler;
+import org.apache.maven.artifact.versioning.VersionRange;
+import org.apache.maven.model.Build;
+import org.apache.maven.model.Dependency;
+import org.apache.maven.model.Model;
+import org.apache.maven.project.MavenProject;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+
+public class DeploymentPackageMojoTest {
+
+    private static DeploymentPackageMojo createMojo(int dependencies) {
+        Model model = new Model();
+        for (int i = 0; i < dependencies; i++) {
+            Dependency dep = new Dependency();
+            dep.setGroupId("org.example.group" + (i % 50));
+            dep.setArtifactId("bundle" + i);
+            dep.setVersion("1.0." + i);
+            model.addDependency(dep);
+        }
+        DeploymentPackageMojo mojo = new DeploymentPackageMojo();
+        mojo.setProject(new MavenProject(model));
+        return mojo;
+    }
+
+    private static DeploymentPackageMetadata createMetadata(int declared) {
+        DeploymentPackageMetadata dpInfo = new DeploymentPackageMetadata();
+        for (int i = 0; i < declared; i++) {
+            BundleResource bres = new BundleResource();
+            bres.setGroupId("org.example.group" + (i % 50));
+            bres.setArtifactId("bundle" + i);
+            dpInfo.getResources().add(bres);
+        }
+        return dpInfo;
+    }
+
+    @Test
+    public void testAddDependencies() {
+        DeploymentPackageMojo mojo = createMojo(10);
+        DeploymentPackageMetadata dpInfo = createMetadata(5);
+
+        mojo.addDependencies(dpInfo);
+
+        assertEquals(10, dpInfo.getBundleResources().size());
+        BundleResource first = dpInfo.getBundleResources().get(0);
+        assertEquals("bundle0", first.getArtifactId());
+        assertEquals("1.0.0", first.getVersion());
+        assertEquals("bundles", first.getTargetPath());
+        assertEquals("1.0.9", dpInfo.getBundleResources().get(9).getVersion());
+    }
+
+    @Test
+    public void testDependencyVersion() {
+        DeploymentPackageMojo mojo = createMojo(10);
+
+        assertEquals("1.0.3", mojo.getDependencyVersion("org.example.group3", "bundle3", null));
+        assertEquals("1.0.3", mojo.getDependencyVersion("org.example.group3", "bundle3", "sources"));
+        assertNull(mojo.getDependencyVersion("org.example.group4", "bundle3", null));
+    }
+
+    @Test
+    public void testReactorArtifact() throws IOException {
+        File target = new File("target/reactor-test/sibling/target");
+        target.mkdirs();
+        File jar = new File(target, "sibling-1.0.0.jar");
+        new FileOutputStream(jar).close();
+
+        Model model = new Model();
+        model.setGroupId("org.example");
+        model.setArtifactId("sibling");
+        model.setVersion("1.0.0");
+        Build build = new Build();
+        build.setDirectory(target.getPath());
+        build.setFinalName("sibling-1.0.0");
+        model.setBuild(build);
+
+        MavenProject sibling = new MavenProject(model);
+        DeploymentPackageMojo mojo = createMojo(1);
+        mojo.setReactorProjects(Arrays.asList(new MavenProject[] { mojo.getProject(), sibling }));
+
+        // A jar the module has not attached in this session may be stale.
+        assertNull(mojo.getReactorArtifact("org.example", "sibling", "1.0.0", null));
+
+        Artifact artifact = new DefaultArtifact("org.example", "sibling", VersionRange.createFromVersion("1.0.0"),
+                null, "jar", null, new DefaultArtifactHandler("jar"));
+        artifact.setFile(jar);
+        sibling.setArtifact(artifact);
+        assertEquals(jar, mojo.getReactorArtifact("org.example", "sibling", "1.0.0", null));
+        assertEquals(jar, mojo.getReactorArtifact("org.example", "sibling", null, null));
+        assertNull(mojo.getReactorArtifact("org.example", "sibling", "2.0.0", null));
+        assertNull(mojo.getReactorArtifact("org.example", "sibling", "1.0.0", "sources"));
+        assertNull(mojo.getReactorArtifact("org.example", "other", "1.0.0", null));
+    }
+
+    @Test
+    public void testBaseImage() throws Exception {
+        File dir = new File("target/base-image-test");
+        dir.mkdirs();
+        File descriptor = new File(dir, "base-image.txt");
+        FileOutputStream os = new FileOutputStream(descriptor);
+        os.write(("# Exported from a gateway\n"
+                + "org.apache.felix.scr;2.1\n"
+                + "    3|Active     |    1|org.eclipse.kura.api (2.3.0)\n"
+                + "org.example.any\n").getBytes("UTF-8"));
+        os.close();
+
+        BaseImage image = new BaseImage();
+        image.setDescriptor(descriptor);
+        image.getBundles().add("org.example.inline;1.0.0.qualifier");
+        assertTrue(image.provides("org.apache.felix.scr", "2.1.0"));
+        assertFalse(image.provides("org.apache.felix.scr", "2.1.1"));
+        assertTrue(image.provides("org.eclipse.kura.api", "2.3"));
+        assertTrue(image.provides("org.example.any", "5.0.0"));
+        assertTrue(image.provides("org.example.inline", "1.0.0.qualifier"));
+        assertFalse(image.provides("org.example.inline", "1.0.0"));
+        assertFalse(image.provides("org.example.other", "1.0.0"));
+    }
+
+    @Test
+    public void testAddClassifiedDependency() {
+        DeploymentPackageMojo mojo = createMojo(2);
+        Dependency classified = new Dependency();
+        classified.setGroupId("org.example.group1");
+        classified.setArtifactId("bundle1");
+        classified.setClassifier("linux");
+        classified.setVersion("2.0.0");
+        mojo.getProject().getModel().addDependency(classified);
+        DeploymentPackageMetadata dpInfo = createMetadata(2);
+        dpInfo.getBundleResources().get(1).setClassifier("windows");
+
+        mojo.addDependencies(dpInfo);
+
+        // Merged with the declared resource, whose classifier is kept.
+        assertEquals(2, dpInfo.getBundleResources().size());
+        BundleResource bres = dpInfo.getBundleResources().get(1);
+        assertEquals("bundle1", bres.getArtifactId());
+        assertEquals("windows", bres.getClassifier());
+        assertEquals("2.0.0", bres.getVersion());
+    }
+
+}
@@ -0,0 +1,310 @@
+package org.organicelement.deployment.mojo.transform;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.GregorianCalendar;
+import java.util.List;
+import java.util.Random;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+
+import org.junit.Test;
+import org.organicelement.deployment.mojo.BundleHeader;
+
+import static org.junit.Assert.*;
+
+
+public class BundlePipelineTest {
+
+    private static File createBundle(File dir, String name, int entries) throws IOException {
+        File bundle = new File(dir, name);
+        Manifest mf = new Manifest();
+        mf.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+        mf.getMainAttributes().putValue("Bundle-SymbolicName", "org.example.bundle");
+        JarOutputStream jos = new JarOutputStream(new FileOutputStream(bundle), mf);
+        Random random = new Random(42);
+        byte[] data = new byte[4096];
+        for (int i = 0; i < entries; i++) {
+            jos.putNextEntry(new JarEntry("org/example/Class" + i + ".class"));
+            random.nextBytes(data);
+            jos.write(data, 0, data.length / 2);
+            jos.write(new byte[data.length / 2]);
+            jos.closeEntry();
+            if (i % 10 == 0) {
+                jos.putNextEntry(new JarEntry("org/example/Class" + i + ".java"));
+                jos.write(data, 0, 100);
+                jos.closeEntry();
+            }
+        }
+        jos.close();
+        return bundle;
+    }
+
+    private static HeaderTransformer header(String name, String value) {
+        return new HeaderTransformer(Collections.singletonList(new BundleHeader(name, value)));
+    }
+
+    private static EntryFilterTransformer exclude(String pattern) {
+        EntryFilterTransformer filter = new EntryFilterTransformer();
+        filter.setExcludes(new ArrayList<String>(Arrays.asList(new String[] { pattern })));
+        return filter;
+    }
+
+    private static void transform(BundlePipeline pipeline, File source, File target) throws IOException {
+        OutputStream os = new FileOutputStream(target);
+        try {
+            pipeline.plan(source).write(os);
+        } finally {
+            os.close();
+        }
+    }
+
+    private static byte[] read(InputStream is) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int read;
+        while ((read = is.read(buffer)) != -1) {
+            bos.write(buffer, 0, read);
+        }
+        is.close();
+        return bos.toByteArray();
+    }
+
+    @Test
+    public void testTransform() throws IOException {
+        File dir = new File("target/pipeline-test");
+        dir.mkdirs();
+        File source = createBundle(dir, "source.jar", 20);
+        File target = new File(dir, "target.jar");
+
+        List<BundleTransformer> transformers = new ArrayList<BundleTransformer>();
+        transformers.add(header("X-Added", "true"));
+        transformers.add(exclude("**/*.java"));
+        transformers.add(new AbstractBundleTransformer() {
+
+            public String getKey() {
+                return "upper";
+            }
+
+            public boolean isTransformed(String name) {
+                return name.equals("org/example/Class3.class");
+            }
+
+            public byte[] transform(String name, byte[] data) {
+                return new byte[] { 1, 2, 3 };
+            }
+        });
+        BundlePipeline pipeline = new BundlePipeline(transformers);
+        BundlePipeline.Plan plan = pipeline.plan(source);
+        assertTrue(plan.isChanged());
+        assertEquals(2, plan.getRemovedEntries());
+        assertTrue(plan.getRemovedBytes() > 0);
+        transform(pipeline, source, target);
+
+        JarFile src = new JarFile(source);
+        JarFile result = new JarFile(target);
+        assertEquals("true", result.getManifest().getMainAttributes().getValue("X-Added"));
+        assertNull(result.getEntry("org/example/Class0.java"));
+        assertArrayEquals(new byte[] { 1, 2, 3 }, read(result.getInputStream(result.getEntry("org/example/Class3.class"))));
+        assertArrayEquals(read(src.getInputStream(src.getEntry("org/example/Class4.class"))),
+                read(result.getInputStream(result.getEntry("org/example/Class4.class"))));
+        assertEquals(src.size() - 2, result.size());
+        src.close();
+        result.close();
+    }
+
+    @Test
+    public void testUnchanged() throws IOException {
+        File dir = new File("target/pipeline-test");
+        dir.mkdirs();
+        File source = createBundle(dir, "unchanged.jar", 5);
+
+        List<BundleTransformer> transformers = new ArrayList<BundleTransformer>();
+        transformers.add(header("Bundle-SymbolicName", "org.example.bundle"));
+        transformers.add(exclude("OSGI-OPT/"));
+        assertFalse(new BundlePipeline(transformers).plan(source).isChanged());
+    }
+
+    @Test
+    public void testReproducible() throws IOException {
+        File dir = new File("target/pipeline-test");
+        dir.mkdirs();
+        // Entries written long ago.
+        File source = new File(dir, "reproducible.jar");
+        long time = new GregorianCalendar(2001, Calendar.JANUARY, 1).getTimeInMillis();
+        JarOutputStream jos = new JarOutputStream(new FileOutputStream(source));
+        JarEntry entry = new JarEntry(JarFile.MANIFEST_NAME);
+        entry.setTime(time);
+        jos.putNextEntry(entry);
+        jos.write("Manifest-Version: 1.0\r\nBundle-SymbolicName: org.example.bundle\r\n\r\n".getBytes("UTF-8"));
+        for (int i = 0; i < 5; i++) {
+            entry = new JarEntry("org/example/Class" + i + ".class");
+            entry.setTime(time);
+            jos.putNextEntry(entry);
+            jos.write(new byte[] { (byte) i, 0, 0, 0 });
+        }
+        jos.close();
+        File first = new File(dir, "first.jar");
+        File second = new File(dir, "second.jar");
+
+        List<BundleTransformer> transformers = new ArrayList<BundleTransformer>();
+        transformers.add(header("X-Added", "true"));
+        transformers.add(new AbstractBundleTransformer() {
+
+            public String getKey() {
+                return "reverse";
+            }
+
+            public boolean isTransformed(String name) {
+                return name.equals("org/example/Class3.class");
+            }
+
+            public byte[] transform(String name, byte[] data) {
+                return new byte[] { 3, 2, 1 };
+            }
+        });
+        BundlePipeline pipeline = new BundlePipeline(transformers);
+        transform(pipeline, source, first);
+        transform(pipeline, source, second);
+        assertArrayEquals(read(new FileInputStream(first)), read(new FileInputStream(second)));
+
+        // New entries take the time of the entries they replace, not the current time.
+        JarFile result = new JarFile(first);
+        assertEquals("true", result.getManifest().getMainAttributes().getValue("X-Added"));
+        assertEquals(time, result.getEntry(JarFile.MANIFEST_NAME).getTime());
+        assertEquals(time, result.getEntry("org/example/Class3.class").getTime());
+        result.close();
+    }
+
+    @Test
+    public void testHeaderKeys() {
+        HeaderTransformer joined = header("A", "x, B: y");
+        HeaderTransformer split = new HeaderTransformer(Arrays.asList(new BundleHeader[] {
+            new BundleHeader("A", "x"), new BundleHeader("B", "y") }));
+        assertFalse(joined.getKey().equals(split.getKey()));
+
+        // Names are case insensitive, the last value wins.
+        HeaderTransformer overridden = new HeaderTransformer(Arrays.asList(new BundleHeader[] {
+            new BundleHeader("b", "z"), new BundleHeader("A", "x"), new BundleHeader("B", "y") }));
+        assertEquals(split.getKey(), overridden.getKey());
+    }
+
+    @Test
+    public void testFilterKeys() {
+        EntryFilterTransformer included = new EntryFilterTransformer();
+        included.setIncludes(new ArrayList<String>(Arrays.asList(new String[] { "a][b" })));
+        EntryFilterTransformer excluded = new EntryFilterTransformer();
+        excluded.setIncludes(new ArrayList<String>(Arrays.asList(new String[] { "a" })));
+        excluded.setExcludes(new ArrayList<String>(Arrays.asList(new String[] { "b][" })));
+        assertFalse(included.getKey().equals(excluded.getKey()));
+        assertFalse(new BundlePipeline(Collections.<BundleTransformer> singletonList(included)).getKey()
+                .equals(new BundlePipeline(Collections.<BundleTransformer> singletonList(excluded)).getKey()));
+    }
+
+    @Test
+    public void testStrip() {
+        StripTransformer strip = new StripTransformer();
+        strip.setExcludes(new ArrayList<String>(Arrays.asList(new String[] { "**/*.txt", "OSGI-INF/**" })));
+
+        assertFalse(strip.accept("META-INF/maven/org.example/bundle/pom.xml"));
+        assertFalse(strip.accept("OSGI-OPT/src/org/example/A.java"));
+        assertFalse(strip.accept("org/example/A.java"));
+        assertFalse(strip.accept("org/example/readme.txt"));
+        assertTrue(strip.accept("org/example/A.class"));
+        assertTrue(strip.accept("META-INF/MANIFEST.MF"));
+        assertTrue(strip.accept("OSGI-INF/component.xml"));
+        assertTrue(strip.accept("META-INF/services/org.example.Service"));
+
+        strip.setUseDefaultExcludes(false);
+        assertTrue(strip.accept("org/example/A.java"));
+
+        // Protected whatever the case.
+        StripTransformer all = new StripTransformer();
+        all.setExcludes(new ArrayList<String>(Arrays.asList(new String[] { "**" })));
+        assertTrue(all.accept("META-INF/signer.sf"));
+        assertTrue(all.accept("meta-inf/SIGNER.RSA"));
+        assertTrue(all.accept("osgi-inf/component.xml"));
+        assertFalse(all.accept("META-INF/LICENSE"));
+    }
+
+    @Test
+    public void testSignedBundleIsNotStripped() throws IOException {
+        File dir = new File("target/pipeline-test");
+        dir.mkdirs();
+        File source = new File(dir, "signed.jar");
+        Manifest mf = new Manifest();
+        mf.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+        JarOutputStream jos = new JarOutputStream(new FileOutputStream(source), mf);
+        jos.putNextEntry(new JarEntry("META-INF/SIGNER.SF"));
+        jos.closeEntry();
+        jos.putNextEntry(new JarEntry("org/example/A.java"));
+        jos.closeEntry();
+        jos.close();
+
+        BundlePipeline.Plan plan = new BundlePipeline(
+                Collections.<BundleTransformer>singletonList(new StripTransformer())).plan(source);
+        assertTrue(plan.isSigned());
+        assertFalse(plan.isChanged());
+        assertEquals(1, plan.getKeptEntries());
+    }
+
+    @Test
+    public void testNativeCode() throws IOException {
+        File dir = new File("target/pipeline-test");
+        dir.mkdirs();
+        File source = new File(dir, "native.jar");
+        Manifest mf = new Manifest();
+        mf.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+        mf.getMainAttributes().putValue("Bundle-NativeCode",
+                "lib/x86_64/libserial.so;osname=Linux;processor=x86_64,"
+                + "lib/aarch64/libserial.so;osname=Linux;processor=aarch64,"
+                + "lib/arm/libserial.so;osname=Linux;processor=\"armv7l\",*");
+        JarOutputStream jos = new JarOutputStream(new FileOutputStream(source), mf);
+        for (String name : new String[] { "lib/x86_64/libserial.so", "lib/aarch64/libserial.so",
+            "lib/arm/libserial.so", "org/example/Serial.class" }) {
+            jos.putNextEntry(new JarEntry(name));
+            jos.write(new byte[1024]);
+            jos.closeEntry();
+        }
+        jos.close();
+
+        NativeCodeTransformer target = new NativeCodeTransformer();
+        target.setOsname("linux");
+        target.setProcessor("arm64");
+        File result = new File(dir, "native-aarch64.jar");
+        BundlePipeline pipeline = new BundlePipeline(Collections.<BundleTransformer>singletonList(target));
+        assertEquals(2, pipeline.plan(source).getRemovedEntries());
+        transform(pipeline, source, result);
+
+        JarFile jar = new JarFile(result);
+        assertEquals("lib/aarch64/libserial.so;osname=Linux;processor=aarch64,*",
+                jar.getManifest().getMainAttributes().getValue("Bundle-NativeCode"));
+        assertNotNull(jar.getEntry("lib/aarch64/libserial.so"));
+        assertNotNull(jar.getEntry("org/example/Serial.class"));
+        assertNull(jar.getEntry("lib/x86_64/libserial.so"));
+        assertNull(jar.getEntry("lib/arm/libserial.so"));
+        jar.close();
+
+        // No matching clause, the bundle is left untouched.
+        target.setProcessor("ppc64le");
+        assertFalse(pipeline.plan(source).isChanged());
+    }
+
+    /**
+     * Running N transformers in one pipeline must cost about one pass, where
+     * one rewrite per transformer costs N passes.
+     */
+
+}